@@ -10,6 +10,11 @@ import android.view.WindowManager;
 import android.widget.ImageView;
 import android.widget.Toast;
 
+import com.github.yoojia.zxing.qrcode.Decoder;
+import com.github.yoojia.zxing.qrcode.DuplicateFilter;
+import com.github.yoojia.zxing.qrcode.FocusPolicy;
+import com.github.yoojia.zxing.qrcode.FrameQuality;
+import com.github.yoojia.zxing.qrcode.MotionDetector;
 import com.github.yoojia.zxing.qrcode.QRCodeSupport;
 import com.github.yoojia.zxing.R;
 import com.github.yoojia.zxing.qrcode.FinderView;
@@ -28,7 +33,7 @@ public class QRCodeScanActivity extends Activity{
     private final Runnable mDelayAutoTask = new Runnable() {
         @Override
         public void run() {
-            mQRCodeScanSupport.startAuto(500);
+            mQRCodeScanSupport.startStreaming(15, 500);
         }
     };
 
@@ -49,6 +54,16 @@ public class QRCodeScanActivity extends Activity{
             }
         });
         mQRCodeScanSupport.setCapturePreview(capturePreview);
+        mQRCodeScanSupport.setPreviewBufferCount(2);
+        mQRCodeScanSupport.setFramingRectDecode(true);
+        mQRCodeScanSupport.getDecoderBuilder()
+                .setEscalation(Decoder.LEVEL_GLOBAL_HISTOGRAM, Decoder.LEVEL_TRY_HARDER)
+                .setTracking(true);
+        mQRCodeScanSupport.setDuplicateFilter(new DuplicateFilter.Builder().build());
+        mQRCodeScanSupport.setFrameQuality(new FrameQuality.Builder().build());
+        mQRCodeScanSupport.setMotionDetector(new MotionDetector.Builder().build());
+        // 不支持连续对焦的设备回退为定时对焦时，按清晰度和解码结果决定是否对焦
+        mQRCodeScanSupport.setFocusPolicy(new FocusPolicy.Builder().build());
 
     }
 
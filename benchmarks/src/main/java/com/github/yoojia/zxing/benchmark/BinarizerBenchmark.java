@@ -0,0 +1,62 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.qrcode.YUVLuminanceSource;
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 二值化代价：解码级别 LEVEL_GLOBAL_HISTOGRAM 与 LEVEL_HYBRID 的差别主要在这里。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinarizerBenchmark {
+
+    @Param({"global", "hybrid"})
+    public String binarizer;
+
+    /**
+     * 亮度图像边长，对应扫描框大小
+     */
+    @Param({"432", "648"})
+    public int size;
+
+    private LuminanceSource mSource;
+
+    @Setup
+    public void setup() {
+        final byte[] frame = Frames.nv21(Frames.content(100), size, size, size * 2 / 3, 1, 1);
+        mSource = new YUVLuminanceSource(frame, size, size, 0, 0, size, size, 0);
+    }
+
+    @Benchmark
+    public BitMatrix blackMatrix() throws NotFoundException {
+        // Binarizer 会缓存结果，每次创建新实例
+        final Binarizer instance = "global".equals(binarizer)
+                ? new GlobalHistogramBinarizer(mSource) : new HybridBinarizer(mSource);
+        return instance.getBlackMatrix();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.qrcode.LuminanceDecoder;
+import com.github.yoojia.zxing.qrcode.YUVLuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 完整解码一帧：从 NV21 预览帧裁剪扫描框并旋转90度，交给 LuminanceDecoder。
+ * 默认使用合成帧，参数覆盖帧尺寸、二维码版本（内容长度）和模糊程度；
+ * 以 -Dzxing.corpus=目录 运行时，改为依次解码目录中的真实帧，合成帧参数不再生效。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    @Param({"1280x720", "1920x1080"})
+    public String frameSize;
+
+    /**
+     * 内容长度：20 约为版本2，100 约为版本5，400 约为版本13
+     */
+    @Param({"20", "100", "400"})
+    public int contentLength;
+
+    /**
+     * 均值模糊半径，模拟失焦。1280x720 帧中内容长度为400的二维码模糊后无法解码，用于衡量解码失败时逐级尝试的代价。
+     */
+    @Param({"0", "2"})
+    public int blur;
+
+    /**
+     * 最高解码级别，最低级别为 LEVEL_GLOBAL_HISTOGRAM
+     */
+    @Param({"1", "3"})
+    public int highestLevel;
+
+    @Param({"1", "3"})
+    public int pyramidLevels;
+
+    /**
+     * 跟踪上一帧的二维码位置。合成帧中二维码位置不变，跟踪窗口每帧命中
+     */
+    @Param({"false", "true"})
+    public boolean tracking;
+
+    private final List<YUVLuminanceSource> mSources = new ArrayList<>();
+    private LuminanceDecoder mDecoder;
+    private int mNext;
+
+    @Setup
+    public void setup() throws IOException {
+        final List<Frames.Frame> frames = Frames.corpus();
+        if (frames.isEmpty()) {
+            final String[] size = frameSize.split("x");
+            final int width = Integer.parseInt(size[0]);
+            final int height = Integer.parseInt(size[1]);
+            frames.add(new Frames.Frame(Frames.nv21(Frames.content(contentLength), width, height,
+                    height / 2, blur, 1), width, height));
+        }
+        for (Frames.Frame frame : frames) {
+            final int side = Math.min(frame.width, frame.height) * 6 / 10;
+            mSources.add(new YUVLuminanceSource(frame.data, frame.width, frame.height,
+                    (frame.width - side) / 2, (frame.height - side) / 2, side, side, 90));
+        }
+        mDecoder = new LuminanceDecoder.Builder()
+                .setEscalation(LuminanceDecoder.LEVEL_GLOBAL_HISTOGRAM, highestLevel)
+                .setPyramidLevels(pyramidLevels)
+                .setTracking(tracking)
+                .build();
+    }
+
+    @Benchmark
+    public String decode() {
+        final YUVLuminanceSource source = mSources.get(mNext);
+        mNext = (mNext + 1) % mSources.size();
+        return mDecoder.decode(source);
+    }
+}
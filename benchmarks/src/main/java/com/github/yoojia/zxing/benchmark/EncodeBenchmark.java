@@ -0,0 +1,105 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.qrcode.MatrixEncoder;
+import com.github.yoojia.zxing.qrcode.RasterRenderer;
+import com.github.yoojia.zxing.writer.PNGWriter;
+import com.google.zxing.common.BitMatrix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 二维码生成：编码矩阵、绘制像素和直接输出 PNG 的代价，覆盖不同输出尺寸。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"200", "500", "1000"})
+    public int size;
+
+    private MatrixEncoder mEncoder;
+    private RasterRenderer mRenderer;
+    private BitMatrix mMatrix;
+    private String mContent;
+    private final PNGWriter mPNGWriter = new PNGWriter();
+
+    @Setup
+    public void setup() {
+        mContent = Frames.content(100);
+        mEncoder = new MatrixEncoder.Builder()
+                .setOutputBitmapWidth(size)
+                .setOutputBitmapHeight(size)
+                .build();
+        mRenderer = new RasterRenderer(mEncoder.getCodeColor(), mEncoder.getBackgroundColor());
+        mMatrix = mEncoder.encodeMatrix(mContent, size, size);
+    }
+
+    @Benchmark
+    public BitMatrix encodeMatrix() {
+        return mEncoder.encodeMatrix(mContent, size, size);
+    }
+
+    /**
+     * 复用绘制缓冲区逐块输出，对应 Encoder 写入 Bitmap 的过程
+     */
+    @Benchmark
+    public void renderBlocks(final Blackhole blackhole) {
+        mRenderer.render(mMatrix, new RasterRenderer.RowSink() {
+            @Override
+            public void onRows(int[] pixels, int top, int rows, int width) {
+                blackhole.consume(pixels);
+            }
+        });
+    }
+
+    @Benchmark
+    public int[] renderRaster() {
+        return mRenderer.render(mMatrix);
+    }
+
+    @Benchmark
+    public long writePNG() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        mPNGWriter.write(mMatrix, mEncoder.getCodeColor(), mEncoder.getBackgroundColor(), out);
+        return out.count;
+    }
+
+    /**
+     * 只统计写入字节数的输出流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.qrcode.MatrixEncoder;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 基准测试使用的预览帧：合成的 NV21 帧，或从目录加载的真实帧。
+ */
+final class Frames {
+
+    static final String CORPUS_PROPERTY = "zxing.corpus";
+
+    private static final Pattern NV21_NAME = Pattern.compile(".*_(\\d+)x(\\d+)\\.nv21");
+
+    private Frames() {
+    }
+
+    /**
+     * 指定长度的文本内容，长度决定二维码版本
+     */
+    static String content(int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + (i * 7) % 26));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 合成 NV21 预览帧：带噪声的灰色背景，二维码横向放在帧中央（相机预览帧为横向，显示时旋转90度）。
+     * @param content 二维码内容
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param codeSize 二维码边长，单位：px
+     * @param blur 均值模糊半径，0为不模糊
+     * @param seed 噪声随机种子
+     * @return NV21 数据，UV分量为128
+     */
+    static byte[] nv21(String content, int width, int height, int codeSize, int blur, long seed) {
+        final BitMatrix matrix = new MatrixEncoder.Builder().build().encodeMatrix(content, codeSize, codeSize);
+        final byte[] frame = new byte[width * height * 3 / 2];
+        final Random random = new Random(seed);
+        final int left = (width - matrix.getWidth()) / 2;
+        final int top = (height - matrix.getHeight()) / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int mx = x - left;
+                final int my = y - top;
+                final boolean dark = mx >= 0 && my >= 0 && mx < matrix.getWidth() && my < matrix.getHeight()
+                        && matrix.get(mx, my);
+                // 画面左亮右暗，模拟不均匀光照
+                final int base = (dark ? 40 : 200) - x * 40 / width;
+                frame[y * width + x] = (byte) clamp(base + (int) (random.nextGaussian() * 8));
+            }
+        }
+        if (blur > 0) {
+            boxBlur(frame, width, height, blur);
+        }
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    /**
+     * 加载真实预览帧，目录由系统属性 zxing.corpus 指定。
+     * 支持 PGM(P5) 灰度图片，以及文件名为 名称_宽x高.nv21 的原始预览帧。
+     * @return 预览帧，未指定目录时为空
+     */
+    static List<Frame> corpus() throws IOException {
+        final List<Frame> frames = new ArrayList<>();
+        final String directory = System.getProperty(CORPUS_PROPERTY);
+        if (directory == null) {
+            return frames;
+        }
+        final File[] files = new File(directory).listFiles();
+        if (files == null) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            final String name = file.getName();
+            final Matcher matcher = NV21_NAME.matcher(name);
+            if (matcher.matches()) {
+                frames.add(new Frame(read(file), Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            } else if (name.endsWith(".pgm")) {
+                frames.add(readPGM(file));
+            }
+        }
+        return frames;
+    }
+
+    private static Frame readPGM(File file) throws IOException {
+        final byte[] data = read(file);
+        // 头部：P5 宽 高 最大值，以空白分隔，之后为一个空白字符和像素数据
+        final int[] values = new int[3];
+        int offset = 2;
+        for (int i = 0; i < values.length; i++) {
+            while (Character.isWhitespace(data[offset]) || data[offset] == '#') {
+                if (data[offset] == '#') {
+                    while (data[offset] != '\n') {
+                        offset++;
+                    }
+                }
+                offset++;
+            }
+            int value = 0;
+            while (!Character.isWhitespace(data[offset])) {
+                value = value * 10 + (data[offset++] - '0');
+            }
+            values[i] = value;
+        }
+        if (data[0] != 'P' || data[1] != '5' || values[2] > 255) {
+            throw new IOException("Unsupported PGM: " + file);
+        }
+        offset++;
+        return new Frame(Arrays.copyOfRange(data, offset, data.length), values[0], values[1]);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void boxBlur(byte[] data, int width, int height, int radius) {
+        final byte[] copy = Arrays.copyOf(data, width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int dy = Math.max(0, y - radius); dy <= Math.min(height - 1, y + radius); dy++) {
+                    for (int dx = Math.max(0, x - radius); dx <= Math.min(width - 1, x + radius); dx++) {
+                        sum += copy[dy * width + dx] & 0xFF;
+                        count++;
+                    }
+                }
+                data[y * width + x] = (byte) (sum / count);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    /**
+     * 一帧亮度数据，前 width * height 字节为Y分量
+     */
+    static final class Frame {
+
+        final byte[] data;
+        final int width;
+        final int height;
+
+        Frame(byte[] data, int width, int height) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
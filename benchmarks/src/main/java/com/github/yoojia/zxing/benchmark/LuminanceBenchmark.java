@@ -0,0 +1,83 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.qrcode.YUVLuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * NV21 预览帧到亮度矩阵的转换：裁剪、旋转，复用缓冲区与每次分配的对比。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LuminanceBenchmark {
+
+    @Param({"1280x720", "1920x1080"})
+    public String frameSize;
+
+    @Param({"0", "90"})
+    public int rotation;
+
+    /**
+     * full：整帧；framing：中央边长为短边 60% 的正方形，与默认扫描框相同
+     */
+    @Param({"full", "framing"})
+    public String crop;
+
+    private YUVLuminanceSource mSource;
+    private byte[] mBuffer;
+    private byte[] mRow;
+
+    @Setup
+    public void setup() {
+        final String[] size = frameSize.split("x");
+        final int width = Integer.parseInt(size[0]);
+        final int height = Integer.parseInt(size[1]);
+        final byte[] frame = Frames.nv21(Frames.content(100), width, height, height / 2, 0, 1);
+        if ("full".equals(crop)) {
+            mSource = new YUVLuminanceSource(frame, width, height, 0, 0, width, height, rotation);
+        } else {
+            final int side = height * 6 / 10;
+            mSource = new YUVLuminanceSource(frame, width, height,
+                    (width - side) / 2, (height - side) / 2, side, side, rotation);
+        }
+        mBuffer = new byte[mSource.getWidth() * mSource.getHeight()];
+        mRow = new byte[mSource.getWidth()];
+    }
+
+    @Benchmark
+    public Object compact() {
+        return mSource.compact(mBuffer);
+    }
+
+    @Benchmark
+    public byte[] getMatrix() {
+        return mSource.getMatrix();
+    }
+
+    @Benchmark
+    public void getRows(Blackhole blackhole) {
+        final int height = mSource.getHeight();
+        for (int y = 0; y < height; y++) {
+            blackhole.consume(mSource.getRow(y, mRow));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.yoojia.zxing.benchmark;
+
+import com.github.yoojia.zxing.frame.Frame;
+import com.github.yoojia.zxing.frame.FrameSource;
+import com.github.yoojia.zxing.frame.ReplayFrameSource;
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+import com.github.yoojia.zxing.metrics.LatencyHistogram;
+import com.github.yoojia.zxing.qrcode.DecodeResult;
+import com.github.yoojia.zxing.qrcode.LuminanceDecoder;
+import com.google.zxing.LuminanceSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 回放录制的预览帧并解码，输出吞吐量和各阶段耗时，用于在构建机上比较不同版本的解码性能。
+ * 帧在回放线程中逐帧同步解码：不限速时每一帧都解码，结果可重复；固定帧率时解码过慢的帧被丢弃。
+ * 只测量解码器本身：不经过 DecodeScheduler 的质量、画面变化和对焦预检，也没有只保留最新帧的调度，
+ * 这些在 Android 模块中，丢帧数与真机并不相同。
+ *
+ * 用法：ReplayRunner 文件名_宽x高.nv21 [帧率] [旋转角度]
+ */
+public final class ReplayRunner {
+
+    private static final Pattern NV21_NAME = Pattern.compile(".*_(\\d+)x(\\d+)\\.nv21");
+
+    private ReplayRunner() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayRunner <name_WIDTHxHEIGHT.nv21> [frameRate] [rotation]");
+            System.exit(1);
+        }
+        final File file = new File(args[0]);
+        final Matcher matcher = NV21_NAME.matcher(file.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("File name must end with _WIDTHxHEIGHT.nv21: " + file);
+        }
+        final int frameRate = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        final int rotation = args.length > 2 ? Integer.parseInt(args[2]) : 90;
+
+        final ReplayFrameSource source = new ReplayFrameSource(file,
+                Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), rotation);
+        source.setFrameRate(frameRate);
+        final DecodeMetrics metrics = new DecodeMetrics();
+        final LuminanceDecoder decoder = new LuminanceDecoder.Builder()
+                .setEscalation(LuminanceDecoder.LEVEL_GLOBAL_HISTOGRAM, LuminanceDecoder.LEVEL_TRY_HARDER)
+                .setMetrics(metrics)
+                .build();
+
+        final long start = System.nanoTime();
+        source.run(new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                try {
+                    metrics.increment(DecodeMetrics.COUNTER_RECEIVED);
+                    metrics.record(DecodeMetrics.STAGE_FRAME_WAIT, System.nanoTime() - frame.getTimestamp());
+                    final LuminanceSource luminance = frame.luminance();
+                    final DecodeResult result = luminance == null ? null : decoder.decodeResult(luminance);
+                    metrics.increment(result == null ? DecodeMetrics.COUNTER_FAILED : DecodeMetrics.COUNTER_DECODED);
+                } finally {
+                    frame.release();
+                }
+            }
+        });
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.printf("frames: %d, delivered: %d, dropped: %d, decoded: %d, failed: %d%n",
+                source.getFrameCount(), source.getDeliveredCount(), source.getDroppedCount(),
+                metrics.getCount(DecodeMetrics.COUNTER_DECODED), metrics.getCount(DecodeMetrics.COUNTER_FAILED));
+        System.out.printf("elapsed: %.1f ms, throughput: %.1f frames/s%n",
+                elapsed / 1e6, source.getDeliveredCount() * 1e9 / elapsed);
+        System.out.printf("%-12s %8s %10s %10s %10s %10s%n", "stage", "count", "mean(us)", "p50(us)", "p99(us)", "max(us)");
+        for (int stage = 0; stage < DecodeMetrics.STAGE_COUNT; stage++) {
+            final LatencyHistogram.Snapshot snapshot = metrics.snapshot(stage);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-12s %8d %10d %10d %10d %10d%n", DecodeMetrics.stageName(stage), snapshot.getCount(),
+                    snapshot.getMean() / 1000, snapshot.getPercentile(50) / 1000,
+                    snapshot.getPercentile(99) / 1000, snapshot.getMax() / 1000);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.yoojia.zxing.frame;
+
+import com.github.yoojia.zxing.qrcode.PlaneLuminanceSource;
+import com.github.yoojia.zxing.qrcode.YUVLuminanceSource;
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 一帧图像：尺寸、格式、旋转角度、时间戳和只解码的区域。帧数据由实现类持有，通过 luminance() 交给解码器；
+ * 使用完毕必须调用 release()，来自缓冲区的帧数据由此归还给帧源。
+ */
+public abstract class Frame {
+
+    /**
+     * 格式：NV21，与 android.graphics.ImageFormat.NV21 相同
+     */
+    public static final int FORMAT_NV21 = 0x11;
+    /**
+     * 格式：NV16，与 android.graphics.ImageFormat.NV16 相同
+     */
+    public static final int FORMAT_NV16 = 0x10;
+    /**
+     * 格式：YV12，与 android.graphics.ImageFormat.YV12 相同
+     */
+    public static final int FORMAT_YV12 = 0x32315659;
+    /**
+     * 格式：YUV_420_888，与 android.graphics.ImageFormat.YUV_420_888 相同，Y、U、V分量分别在三个平面中
+     */
+    public static final int FORMAT_YUV_420_888 = 0x23;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFormat;
+    private final int mRotation;
+    private final long mTimestamp;
+
+    private int mRegionLeft;
+    private int mRegionTop;
+    private int mRegionWidth;
+    private int mRegionHeight;
+
+    /**
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param format 帧格式，如 FORMAT_NV21
+     * @param rotation 解码前顺时针旋转的角度，只支持 0, 90, 180, 270
+     * @param timestamp 帧产生的时间，纳秒，时间基准由帧源决定
+     */
+    protected Frame(int width, int height, int format, int rotation, long timestamp) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Illegal frame size: " + width + "x" + height);
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        mWidth = width;
+        mHeight = height;
+        mFormat = format;
+        mRotation = rotation;
+        mTimestamp = timestamp;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * @return 帧产生的时间，纳秒。只有同一帧源的帧之间可以比较：旧版相机和回放为 System.nanoTime()，
+     * Camera2 为图像的传感器时间戳
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * 指定只解码的区域。区域超出帧或为空时忽略，解码整帧。
+     * @param left 左边界，帧坐标
+     * @param top 上边界，帧坐标
+     * @param width 宽度
+     * @param height 高度
+     * @return 当前帧，用于链式调用
+     */
+    public Frame setRegion(int left, int top, int width, int height) {
+        mRegionLeft = left;
+        mRegionTop = top;
+        mRegionWidth = width;
+        mRegionHeight = height;
+        return this;
+    }
+
+    /**
+     * 构建解码使用的亮度源：裁剪为指定的区域并按旋转角度旋转
+     * @return 亮度源。帧格式不支持直接读取亮度时返回null
+     */
+    public abstract LuminanceSource luminance();
+
+    /**
+     * 帧数据使用完毕，归还给帧源。多次调用只归还一次，释放后不能再使用由它构建的亮度源。
+     */
+    public void release() {
+    }
+
+    /**
+     * 以Y分量在前的平面数据构建亮度源，供实现类使用。Y分量的行宽由帧格式决定，见 yRowStride()。
+     * @param yuvData 帧数据，前 yRowStride() * height 字节为Y分量
+     * @return 裁剪、旋转后的亮度源
+     */
+    protected LuminanceSource luminance(byte[] yuvData) {
+        final int rowStride = yRowStride(mFormat, mWidth);
+        if (hasRegion()) {
+            return new YUVLuminanceSource(yuvData, mWidth, mHeight, rowStride,
+                    mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight, mRotation);
+        }
+        return new YUVLuminanceSource(yuvData, mWidth, mHeight, rowStride, 0, 0, mWidth, mHeight, mRotation);
+    }
+
+    /**
+     * 以Y平面构建亮度源，供实现类使用。直接读取平面，不复制为连续数组。
+     * @param yPlane Y平面，索引0为第一个像素
+     * @param rowStride 行间距，字节
+     * @param pixelStride 像素间距，字节
+     * @return 裁剪、旋转后的亮度源
+     */
+    protected LuminanceSource luminance(ByteBuffer yPlane, int rowStride, int pixelStride) {
+        if (hasRegion()) {
+            return new PlaneLuminanceSource(yPlane, rowStride, pixelStride, mWidth, mHeight,
+                    mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight, mRotation);
+        }
+        return new PlaneLuminanceSource(yPlane, rowStride, pixelStride, mWidth, mHeight,
+                0, 0, mWidth, mHeight, mRotation);
+    }
+
+    private boolean hasRegion() {
+        return mRegionWidth > 0 && mRegionHeight > 0 && mRegionLeft >= 0 && mRegionTop >= 0
+                && mRegionLeft + mRegionWidth <= mWidth && mRegionTop + mRegionHeight <= mHeight;
+    }
+
+    /**
+     * @return 是否为Y分量在前的平面YUV格式，可以直接读取亮度
+     */
+    public static boolean isPlanarYUV(int format) {
+        return format == FORMAT_NV21 || format == FORMAT_YV12 || format == FORMAT_NV16;
+    }
+
+    /**
+     * Y分量每行的字节数。YV12 的行按16字节对齐，见 Camera.Parameters.setPreviewFormat() 文档；其它格式等于帧宽度。
+     * @param format 帧格式
+     * @param width 帧宽度
+     * @return Y分量行宽
+     */
+    public static int yRowStride(int format, int width) {
+        return format == FORMAT_YV12 ? (width + 15) / 16 * 16 : width;
+    }
+}
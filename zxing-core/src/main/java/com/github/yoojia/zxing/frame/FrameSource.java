@@ -0,0 +1,32 @@
+package com.github.yoojia.zxing.frame;
+
+import java.io.IOException;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 帧源：相机、录制的预览帧等。解码流程只依赖帧源提供的 Frame，不关心帧的来源。
+ */
+public interface FrameSource {
+
+    /**
+     * 开始提供帧
+     * @param consumer 接收帧，每一帧使用完毕后必须调用 Frame.release()
+     * @throws IOException 帧源无法打开
+     */
+    void start(Consumer consumer) throws IOException;
+
+    /**
+     * 停止提供帧。已交出的帧仍需由接收方释放。
+     */
+    void stop();
+
+    interface Consumer {
+
+        /**
+         * 接收一帧，在帧源的线程中调用。不能及时处理时应尽快释放或交给其它线程，避免阻塞帧源。
+         * @param frame 帧
+         */
+        void onFrame(Frame frame);
+    }
+}
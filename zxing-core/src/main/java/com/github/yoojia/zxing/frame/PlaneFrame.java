@@ -0,0 +1,55 @@
+package com.github.yoojia.zxing.frame;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 亮度在独立Y平面中的一帧，如 Camera2 ImageReader 的 YUV_420_888 图像。解码器按平面的行、像素间距直接读取，
+ * 不复制为连续数组。实现类在 recycle() 中归还平面，如关闭 Image；也可以用 ByteBuffer 构造假的图像交给接收方测试。
+ */
+public abstract class PlaneFrame extends Frame {
+
+    private final ByteBuffer mPlane;
+    private final int mRowStride;
+    private final int mPixelStride;
+    private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
+    /**
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param format 帧格式，如 FORMAT_YUV_420_888
+     * @param rotation 解码前顺时针旋转的角度，只支持 0, 90, 180, 270
+     * @param timestamp 帧产生的时间，纳秒，如 Image.getTimestamp()
+     * @param yPlane Y平面，索引0为第一个像素
+     * @param rowStride 行间距，字节
+     * @param pixelStride 像素间距，字节
+     */
+    protected PlaneFrame(int width, int height, int format, int rotation, long timestamp,
+                         ByteBuffer yPlane, int rowStride, int pixelStride) {
+        super(width, height, format, rotation, timestamp);
+        mPlane = yPlane;
+        mRowStride = rowStride;
+        mPixelStride = pixelStride;
+    }
+
+    @Override
+    public LuminanceSource luminance() {
+        return luminance(mPlane, mRowStride, mPixelStride);
+    }
+
+    @Override
+    public final void release() {
+        if (mReleased.compareAndSet(false, true)) {
+            recycle();
+        }
+    }
+
+    /**
+     * 平面使用完毕，归还给帧源。只调用一次。
+     */
+    protected abstract void recycle();
+}
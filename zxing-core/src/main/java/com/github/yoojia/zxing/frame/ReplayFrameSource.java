@@ -0,0 +1,331 @@
+package com.github.yoojia.zxing.frame;
+
+import com.google.zxing.LuminanceSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 回放录制的预览帧。文件为连续存放的原始 NV21 帧，没有文件头，帧数为文件长度除以每帧长度。
+ * 文件按段以只读方式映射到内存，每帧只将Y分量复制到固定数量的缓冲区中，回放长时间录制的文件不占用堆内存。
+ *
+ * 回放方式：
+ * 固定帧率时按 帧序号 x 帧间隔 的时间提供帧，与相机相同，没有空闲缓冲区或接收方处理过慢时，错过的帧计为丢弃；
+ * 帧率为0时不限速，每一帧都要等到有空闲缓冲区时才提供，不会丢帧，相同文件每次回放的帧序列完全相同。
+ *
+ * 回放只提供帧，不包含 Android 模块中 DecodeScheduler 的预检（质量、画面变化、对焦）和只保留最新帧的调度，
+ * 接收方直接解码时测量的是解码器本身。
+ */
+public class ReplayFrameSource implements FrameSource {
+
+    // 每次映射的最大长度
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final File mFile;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRotation;
+    private final int mFrameBytes;
+    private final long mFrameCount;
+
+    private int mFrameRate;
+    private int mBufferCount = 2;
+    private int mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight;
+
+    private final Object mLock = new Object();
+    private byte[][] mFreeBuffers;
+    private int mFreeCount;
+    private volatile Thread mThread;
+    private volatile boolean mStopped;
+    private volatile IOException mFailure;
+    private volatile long mDeliveredCount;
+    private volatile long mDroppedCount;
+
+    /**
+     * @param file 录制的 NV21 文件
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param rotation 解码前顺时针旋转的角度，与录制时的相机方向一致，如90
+     * @throws IOException 文件无法读取或长度不足一帧
+     */
+    public ReplayFrameSource(File file, int width, int height, int rotation) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Illegal frame size: " + width + "x" + height);
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        if (!file.canRead()) {
+            throw new IOException("Cannot read file: " + file);
+        }
+        mFile = file;
+        mWidth = width;
+        mHeight = height;
+        mRotation = rotation;
+        mFrameBytes = width * height * 3 / 2;
+        mFrameCount = file.length() / mFrameBytes;
+        if (mFrameCount == 0) {
+            throw new IOException("File shorter than one " + width + "x" + height + " frame: " + file);
+        }
+    }
+
+    /**
+     * 设置回放帧率
+     * @param frameRate 每秒帧数，默认0，即不限速、不丢帧
+     */
+    public void setFrameRate(int frameRate) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + frameRate);
+        }
+        mFrameRate = frameRate;
+    }
+
+    /**
+     * 设置缓冲区数量，即同时交出、尚未释放的最多帧数
+     * @param bufferCount 缓冲区数量，默认2
+     */
+    public void setBufferCount(int bufferCount) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer count must be positive: " + bufferCount);
+        }
+        mBufferCount = bufferCount;
+    }
+
+    /**
+     * 指定每一帧只解码的区域，与录制时的扫描框一致。默认解码整帧。
+     * @param left 左边界，帧坐标
+     * @param top 上边界，帧坐标
+     * @param width 宽度
+     * @param height 高度
+     */
+    public void setRegion(int left, int top, int width, int height) {
+        mRegionLeft = left;
+        mRegionTop = top;
+        mRegionWidth = width;
+        mRegionHeight = height;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return 已交出的帧数
+     */
+    public long getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * @return 固定帧率时错过的帧数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 在新线程中回放，回放结束后线程退出。读取失败时线程结束，异常由 await() 抛出。
+     */
+    @Override
+    public void start(final Consumer consumer) throws IOException {
+        if (mThread != null) {
+            throw new IllegalStateException("Replay already started");
+        }
+        // 在创建线程前清除停止标记，start() 之后立即调用的 stop() 不会被回放线程覆盖
+        mStopped = false;
+        mFailure = null;
+        final Thread thread = new Thread("ReplayFrameSource") {
+            @Override
+            public void run() {
+                try {
+                    replay(consumer);
+                } catch (IOException e) {
+                    mFailure = e;
+                } finally {
+                    mThread = null;
+                }
+            }
+        };
+        mThread = thread;
+        thread.start();
+    }
+
+    /**
+     * 等待 start() 开始的回放结束
+     * @throws IOException 回放线程读取文件失败
+     * @throws InterruptedException 等待时被中断
+     */
+    public void await() throws IOException, InterruptedException {
+        final Thread thread = mThread;
+        if (thread != null) {
+            thread.join();
+        }
+        final IOException failure = mFailure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void stop() {
+        mStopped = true;
+        final Thread thread = mThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 在当前线程中回放全部帧，最后一帧交出后返回
+     * @param consumer 接收帧
+     * @throws IOException 文件读取失败
+     */
+    public void run(Consumer consumer) throws IOException {
+        mStopped = false;
+        replay(consumer);
+    }
+
+    private void replay(Consumer consumer) throws IOException {
+        mDeliveredCount = 0;
+        mDroppedCount = 0;
+        synchronized (mLock) {
+            mFreeBuffers = new byte[mBufferCount][];
+            mFreeCount = mBufferCount;
+            for (int i = 0; i < mBufferCount; i++) {
+                mFreeBuffers[i] = new byte[mWidth * mHeight];
+            }
+        }
+        final long interval = mFrameRate > 0 ? 1000000000L / mFrameRate : 0;
+        final long framesPerSegment = Math.max(1, SEGMENT_BYTES / mFrameBytes);
+        final RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            MappedByteBuffer segment = null;
+            long segmentIndex = -1;
+            final long start = System.nanoTime();
+            long index = 0;
+            // 不限速且有空闲缓冲区时不会等待，需要在每一帧检查中断
+            while (index < mFrameCount && !mStopped && !Thread.currentThread().isInterrupted()) {
+                final long timestamp;
+                final byte[] buffer;
+                if (interval > 0) {
+                    // 按时间计算当前应提供的帧，错过的帧丢弃
+                    final long due = start + index * interval;
+                    final long wait = due - System.nanoTime();
+                    if (wait > 0 && !sleep(wait)) {
+                        break;
+                    }
+                    final long current = (System.nanoTime() - start) / interval;
+                    if (current > index) {
+                        mDroppedCount += Math.min(current, mFrameCount) - index;
+                        index = current;
+                        continue;
+                    }
+                    timestamp = due;
+                    buffer = pollBuffer(false);
+                    if (buffer == null) {
+                        mDroppedCount++;
+                        index++;
+                        continue;
+                    }
+                } else {
+                    buffer = pollBuffer(true);
+                    if (buffer == null) {
+                        break;
+                    }
+                    timestamp = System.nanoTime();
+                }
+                final long frameSegment = index / framesPerSegment;
+                if (frameSegment != segmentIndex) {
+                    final long offset = frameSegment * framesPerSegment * mFrameBytes;
+                    final long length = Math.min(framesPerSegment, mFrameCount - frameSegment * framesPerSegment) * mFrameBytes;
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                    segmentIndex = frameSegment;
+                }
+                // 只复制Y分量
+                segment.position((int) ((index - frameSegment * framesPerSegment) * mFrameBytes));
+                segment.get(buffer, 0, mWidth * mHeight);
+                final ReplayFrame frame = new ReplayFrame(buffer, timestamp);
+                frame.setRegion(mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight);
+                mDeliveredCount++;
+                index++;
+                consumer.onFrame(frame);
+            }
+        } catch (ClosedByInterruptException e) {
+            // 映射时被中断，通道随之关闭，与停止相同
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @param block 没有空闲缓冲区时是否等待
+     * @return 空闲缓冲区；不等待且没有空闲缓冲区，或等待时被停止时返回null
+     */
+    private byte[] pollBuffer(boolean block) {
+        synchronized (mLock) {
+            while (mFreeCount == 0) {
+                if (!block || mStopped) {
+                    return null;
+                }
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return mFreeBuffers[--mFreeCount];
+        }
+    }
+
+    private void recycle(byte[] buffer) {
+        synchronized (mLock) {
+            if (mFreeCount < mFreeBuffers.length && buffer.length == mWidth * mHeight) {
+                mFreeBuffers[mFreeCount++] = buffer;
+                mLock.notify();
+            }
+        }
+    }
+
+    private static boolean sleep(long nanos) {
+        try {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 回放的一帧，数据只有Y分量
+     */
+    private final class ReplayFrame extends Frame {
+
+        private final byte[] mData;
+        private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
+        ReplayFrame(byte[] data, long timestamp) {
+            super(mWidth, mHeight, FORMAT_NV21, mRotation, timestamp);
+            mData = data;
+        }
+
+        @Override
+        public LuminanceSource luminance() {
+            return luminance(mData);
+        }
+
+        @Override
+        public void release() {
+            if (mReleased.compareAndSet(false, true)) {
+                recycle(mData);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.yoojia.zxing.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 扫描解码流程的分阶段耗时和帧计数。每个阶段一个耗时直方图，可以随时取快照；
+ * 设置 Listener 后，每次记录同时回调，回调参数均为基本类型，不分配对象。多个解码线程可以共用一个实例。
+ */
+public final class DecodeMetrics {
+
+    /**
+     * 预览帧提交后等待解码线程的时间
+     */
+    public static final int STAGE_FRAME_WAIT = 0;
+    /**
+     * 预览帧转换为可解码的图像：裁剪旋转亮度，或转换为图片
+     */
+    public static final int STAGE_CONVERT = 1;
+    /**
+     * 从图片提取灰度
+     */
+    public static final int STAGE_LUMINANCE = 2;
+    /**
+     * 二值化，每个解码级别的每次尝试分别记录
+     */
+    public static final int STAGE_BINARIZE = 3;
+    /**
+     * 定位二维码，每次尝试分别记录
+     */
+    public static final int STAGE_DETECT = 4;
+    /**
+     * 纠错和解码文本
+     */
+    public static final int STAGE_DECODE = 5;
+    /**
+     * 一次解码调用的总耗时，包括所有级别的尝试
+     */
+    public static final int STAGE_TOTAL = 6;
+    /**
+     * 解码结果从解码线程发出到主线程回调完成
+     */
+    public static final int STAGE_DISPATCH = 7;
+    /**
+     * 解码前的帧质量预检
+     */
+    public static final int STAGE_QUALITY = 8;
+    /**
+     * 解码前的画面变化检测
+     */
+    public static final int STAGE_MOTION = 9;
+    /**
+     * 一次自动对焦从请求到完成回调
+     */
+    public static final int STAGE_FOCUS = 10;
+
+    public static final int STAGE_COUNT = 11;
+
+    public static final int COUNTER_RECEIVED = 0;
+    public static final int COUNTER_DROPPED = 1;
+    public static final int COUNTER_CANCELED = 2;
+    public static final int COUNTER_DECODED = 3;
+    public static final int COUNTER_FAILED = 4;
+    /**
+     * 预检判定过暗而未解码的帧数，以下同
+     */
+    public static final int COUNTER_REJECTED_DARK = 5;
+    public static final int COUNTER_REJECTED_BRIGHT = 6;
+    public static final int COUNTER_REJECTED_FLAT = 7;
+    public static final int COUNTER_REJECTED_BLURRY = 8;
+    /**
+     * 与解码失败的帧相比没有变化而跳过的帧数
+     */
+    public static final int COUNTER_SKIPPED_UNCHANGED = 9;
+    /**
+     * 相机移动中而推迟的帧数
+     */
+    public static final int COUNTER_DEFERRED_MOVING = 10;
+    /**
+     * 在跟踪窗口中解码成功的帧数
+     */
+    public static final int COUNTER_TRACK_HIT = 11;
+    /**
+     * 跟踪窗口中解码失败、转为搜索整帧的帧数
+     */
+    public static final int COUNTER_TRACK_LOST = 12;
+    /**
+     * 因画面模糊或清晰度下降而请求的对焦次数
+     */
+    public static final int COUNTER_FOCUS_BLURRY = 13;
+    /**
+     * 因连续解码失败而请求的对焦次数
+     */
+    public static final int COUNTER_FOCUS_FAILURES = 14;
+    /**
+     * 没有清晰度数据或超过最长间隔而请求的对焦次数
+     */
+    public static final int COUNTER_FOCUS_IDLE = 15;
+    /**
+     * 画面清晰而跳过对焦的检查次数
+     */
+    public static final int COUNTER_FOCUS_SKIPPED_SHARP = 16;
+    /**
+     * 需要对焦但处于退避期而跳过的检查次数
+     */
+    public static final int COUNTER_FOCUS_SKIPPED_BACKOFF = 17;
+    /**
+     * 对焦后清晰度没有改善、也没有解码成功的次数，每次都会延长退避期
+     */
+    public static final int COUNTER_FOCUS_INEFFECTIVE = 18;
+
+    public static final int COUNTER_COUNT = 19;
+
+    private static final String[] STAGE_NAMES = {
+            "frame-wait", "convert", "luminance", "binarize", "detect", "decode", "total", "dispatch", "quality",
+            "motion", "focus"
+    };
+    private static final String[] COUNTER_NAMES = {
+            "received", "dropped", "canceled", "decoded", "failed",
+            "rejected-dark", "rejected-bright", "rejected-flat", "rejected-blurry",
+            "skipped-unchanged", "deferred-moving",
+            "track-hit", "track-lost",
+            "focus-blurry", "focus-failures", "focus-idle",
+            "focus-skipped-sharp", "focus-skipped-backoff", "focus-ineffective"
+    };
+
+    private final LatencyHistogram[] mStages = new LatencyHistogram[STAGE_COUNT];
+    private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_COUNT);
+    private volatile Listener mListener;
+
+    public DecodeMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mStages[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param listener 记录回调，在记录的线程中调用，为null时取消
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param stage 阶段，如 STAGE_BINARIZE
+     * @param nanos 耗时，单位：纳秒
+     */
+    public void record(int stage, long nanos) {
+        mStages[stage].record(nanos);
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onStage(stage, nanos);
+        }
+    }
+
+    /**
+     * @param counter 计数项，如 COUNTER_DROPPED
+     */
+    public void increment(int counter) {
+        final long total = mCounters.incrementAndGet(counter);
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onCounter(counter, total);
+        }
+    }
+
+    public long getCount(int counter) {
+        return mCounters.get(counter);
+    }
+
+    /**
+     * @param stage 阶段，如 STAGE_BINARIZE
+     * @return 该阶段耗时的快照
+     */
+    public LatencyHistogram.Snapshot snapshot(int stage) {
+        return mStages[stage].snapshot();
+    }
+
+    public void reset() {
+        for (LatencyHistogram stage : mStages) {
+            stage.reset();
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounters.set(i, 0);
+        }
+    }
+
+    public static String stageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public static String counterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    public interface Listener {
+
+        /**
+         * @param stage 阶段，如 STAGE_BINARIZE
+         * @param nanos 耗时，单位：纳秒
+         */
+        void onStage(int stage, long nanos);
+
+        /**
+         * @param counter 计数项，如 COUNTER_DROPPED
+         * @param total 累计值
+         */
+        void onCounter(int counter, long total);
+    }
+}
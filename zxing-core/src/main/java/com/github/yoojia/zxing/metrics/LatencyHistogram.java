@@ -0,0 +1,141 @@
+package com.github.yoojia.zxing.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 固定分桶的耗时直方图。桶 i 记录 [2^(i-1), 2^i) 微秒的耗时，桶0记录不足1微秒的耗时，最后一个桶包含所有更长的耗时。
+ * 记录时只更新原子计数，不分配对象，可以在多个线程中同时记录。
+ */
+public final class LatencyHistogram {
+
+    public static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * @param nanos 耗时，单位：纳秒
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(nanos));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(nanos);
+        long max;
+        while ((max = mMax.get()) < nanos && !mMax.compareAndSet(max, nanos)) {
+            // 其它线程同时更新了最大值，重新比较
+        }
+    }
+
+    /**
+     * 复制当前数据。复制过程中其它线程仍可记录，各项数据之间可能有少量偏差。
+     * @return 数据快照
+     */
+    public Snapshot snapshot() {
+        final long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new Snapshot(buckets, mCount.get(), mTotal.get(), mMax.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * @param bucket 桶序号
+     * @return 桶的上界（不含），单位：纳秒
+     */
+    public static long bucketUpperBound(int bucket) {
+        return (1L << bucket) * 1000;
+    }
+
+    private static int bucketOf(long nanos) {
+        final int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mTotal;
+        private final long mMax;
+
+        Snapshot(long[] buckets, long count, long total, long max) {
+            mBuckets = buckets;
+            mCount = count;
+            mTotal = total;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return 总耗时，单位：纳秒
+         */
+        public long getTotal() {
+            return mTotal;
+        }
+
+        /**
+         * @return 平均耗时，单位：纳秒
+         */
+        public long getMean() {
+            return mCount == 0 ? 0 : mTotal / mCount;
+        }
+
+        /**
+         * @return 最大耗时，单位：纳秒
+         */
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * 估算百分位耗时，结果为所在桶的上界，不超过最大耗时
+         * @param percentile 百分位，0~100
+         * @return 耗时，单位：纳秒
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be 0 ~ 100: " + percentile);
+            }
+            if (mCount == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(mCount * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(bucketUpperBound(i), mMax);
+                }
+            }
+            return mMax;
+        }
+
+        /**
+         * @param bucket 桶序号
+         * @return 落在该桶的次数
+         */
+        public long getBucketCount(int bucket) {
+            return mBuckets[bucket];
+        }
+    }
+}
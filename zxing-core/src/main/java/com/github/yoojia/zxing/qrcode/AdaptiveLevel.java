@@ -0,0 +1,66 @@
+package com.github.yoojia.zxing.qrcode;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 根据最近的解码结果，决定下一次从哪一个级别开始尝试。级别越高代价越大。
+ * - 在更高级别解码成功：之后直接从该级别开始；
+ * - 在起始级别连续成功多次：尝试降低一级；
+ * - 连续多次全部失败（画面中很可能已没有二维码）：回到最低级别。
+ */
+final class AdaptiveLevel {
+
+    private final int mLowest;
+    private final int mHighest;
+    private final int mProbeAfter;
+    private final int mResetAfter;
+
+    private int mStart;
+    private int mSuccessStreak;
+    private int mFailureStreak;
+
+    /**
+     * @param lowest 最低级别
+     * @param highest 最高级别
+     * @param probeAfter 在起始级别连续成功多少次后尝试降低一级
+     * @param resetAfter 连续失败多少次后回到最低级别
+     */
+    AdaptiveLevel(int lowest, int highest, int probeAfter, int resetAfter) {
+        mLowest = lowest;
+        mHighest = highest;
+        mProbeAfter = probeAfter;
+        mResetAfter = resetAfter;
+        mStart = lowest;
+    }
+
+    int start() {
+        return mStart;
+    }
+
+    int lowest() {
+        return mLowest;
+    }
+
+    int highest() {
+        return mHighest;
+    }
+
+    void onSuccess(int level) {
+        mFailureStreak = 0;
+        if (level != mStart) {
+            mStart = level;
+            mSuccessStreak = 0;
+        } else if (++mSuccessStreak >= mProbeAfter && mStart > mLowest) {
+            mStart--;
+            mSuccessStreak = 0;
+        }
+    }
+
+    void onFailure() {
+        mSuccessStreak = 0;
+        if (++mFailureStreak >= mResetAfter) {
+            mStart = mLowest;
+            mFailureStreak = 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.ResultPoint;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 解码结果：文本、原始字节、码制、定位点和解码耗时。
+ */
+public final class DecodeResult {
+
+    private final String mText;
+    private final byte[] mRawBytes;
+    private final BarcodeFormat mFormat;
+    private final ResultPoint[] mPoints;
+    private final int mLevel;
+    private final boolean mTracked;
+    private final long mDecodeTime;
+
+    DecodeResult(String text, byte[] rawBytes, BarcodeFormat format, ResultPoint[] points,
+                 int level, boolean tracked, long decodeTime) {
+        mText = text;
+        mRawBytes = rawBytes;
+        mFormat = format;
+        mPoints = points;
+        mLevel = level;
+        mTracked = tracked;
+        mDecodeTime = decodeTime;
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * @return 码字字节，可能为null
+     */
+    public byte[] getRawBytes() {
+        return mRawBytes;
+    }
+
+    public BarcodeFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * 定位点：二维码为左下、左上、右上三个定位图案的中心，可能附带校正图案的中心。
+     * 坐标为解码的亮度源中的坐标，即裁剪、旋转后的坐标。
+     * @return 定位点
+     */
+    public ResultPoint[] getPoints() {
+        return mPoints;
+    }
+
+    /**
+     * @return 解码成功时使用的解码级别，如 LuminanceDecoder.LEVEL_HYBRID
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return 是否在上一次结果附近的跟踪窗口中解码成功，不需要搜索整帧
+     */
+    public boolean isTracked() {
+        return mTracked;
+    }
+
+    /**
+     * @return 解码耗时，单位：纳秒
+     */
+    public long getDecodeTime() {
+        return mDecodeTime;
+    }
+
+    @Override
+    public String toString() {
+        return mText;
+    }
+}
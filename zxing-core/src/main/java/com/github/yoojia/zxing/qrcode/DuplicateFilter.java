@@ -0,0 +1,140 @@
+package com.github.yoojia.zxing.qrcode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 扫描结果去重。连续扫描时同一个二维码会在每一帧被重复解码，相同内容在时间窗口内再次出现时被判定为重复；
+ * 窗口随每次出现而顺延，二维码离开画面超过窗口时间后再次出现才视为新结果。
+ * 记录数量有上限，超出时淘汰最久未出现的内容。
+ */
+public class DuplicateFilter {
+
+    /**
+     * 新结果，应回调
+     */
+    public static final int RESULT_NEW = 0;
+    /**
+     * 重复结果，但已达到“仍在画面中”的通知间隔
+     */
+    public static final int RESULT_STILL_SEEN = 1;
+    /**
+     * 重复结果，应忽略
+     */
+    public static final int RESULT_DUPLICATE = 2;
+
+    private final long mWindow;
+    private final long mStillSeenInterval;
+    private final Map<String, Sighting> mEntries;
+
+    private DuplicateFilter(Builder builder) {
+        mWindow = builder.mWindow;
+        mStillSeenInterval = builder.mStillSeenInterval;
+        final int capacity = builder.mCapacity;
+        mEntries = new LinkedHashMap<String, Sighting>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Sighting> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 判断扫描结果是否重复
+     * @param content 扫描结果
+     * @return RESULT_NEW, RESULT_STILL_SEEN 或 RESULT_DUPLICATE
+     */
+    public int filter(String content) {
+        return filter(content, System.nanoTime() / 1000000);
+    }
+
+    /**
+     * 判断扫描结果是否重复
+     * @param content 扫描结果
+     * @param now 当前时间，单位：毫秒，只用于计算时间差
+     * @return RESULT_NEW, RESULT_STILL_SEEN 或 RESULT_DUPLICATE
+     */
+    public synchronized int filter(String content, long now) {
+        final Sighting entry = mEntries.get(content);
+        if (entry == null || now - entry.lastSeen > mWindow) {
+            mEntries.put(content, new Sighting(now));
+            return RESULT_NEW;
+        }
+        entry.lastSeen = now;
+        if (mStillSeenInterval > 0 && now - entry.lastReported >= mStillSeenInterval) {
+            entry.lastReported = now;
+            return RESULT_STILL_SEEN;
+        }
+        return RESULT_DUPLICATE;
+    }
+
+    /**
+     * 清除所有记录，之后任何结果都视为新结果
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    private static final class Sighting {
+
+        long lastSeen;
+        long lastReported;
+
+        Sighting(long now) {
+            lastSeen = now;
+            lastReported = now;
+        }
+    }
+
+    public static class Builder {
+
+        private int mCapacity = 32;
+        private long mWindow = 3000;
+        private long mStillSeenInterval = 0;
+
+        /**
+         * 设置最多记录的不同内容数量
+         * @param capacity 数量，默认32
+         * @return Builder，用于链式调用
+         */
+        public Builder setCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+            }
+            mCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * 设置去重时间窗口
+         * @param window 时间窗口，单位：毫秒，默认3000
+         * @return Builder，用于链式调用
+         */
+        public Builder setWindow(long window) {
+            if (window < 0) {
+                throw new IllegalArgumentException("Window must not be negative: " + window);
+            }
+            mWindow = window;
+            return this;
+        }
+
+        /**
+         * 设置重复结果的“仍在画面中”通知间隔。为0时完全忽略重复结果。
+         * @param interval 通知间隔，单位：毫秒，默认0
+         * @return Builder，用于链式调用
+         */
+        public Builder setStillSeenInterval(long interval) {
+            if (interval < 0) {
+                throw new IllegalArgumentException("Interval must not be negative: " + interval);
+            }
+            mStillSeenInterval = interval;
+            return this;
+        }
+
+        public DuplicateFilter build() {
+            return new DuplicateFilter(this);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 自适应对焦策略：根据预览帧的清晰度和解码结果决定是否需要对焦，代替固定周期的对焦。
+ * 每次对焦扫描期间的帧都无法使用，画面已经清晰时不再对焦；画面模糊、清晰度明显低于对焦后的水平，
+ * 或连续多帧解码失败时立即对焦；对焦后清晰度没有改善、也没有解码成功时，按指数退避推迟下一次对焦，
+ * 避免对着无法对焦的画面反复扫描。
+ *
+ * 清晰度与 FrameQuality 的清晰度相同（0~100），对焦期间的帧不参与统计。时间均为 System.nanoTime()，
+ * 由调用方传入。解码线程和对焦线程可以同时调用。
+ */
+public class FocusPolicy {
+
+    // 对焦请求后超过此时间没有完成回调，视为对焦失败；对焦完成后超过此时间，以已经收到的帧判断效果
+    private static final long FOCUS_TIMEOUT = 3000000000L;
+    // 对焦完成后用于判断效果的帧数，收到足够的帧时不等待超时
+    private static final int EVALUATE_FRAMES = 2;
+    // 对焦后清晰度至少提高的比例（百分比），才算对焦有效
+    private static final int IMPROVEMENT_PERCENT = 10;
+
+    private final int mMinSharpness;
+    private final int mDropPercent;
+    private final int mMaxFailures;
+    private final long mMinBackoff;
+    private final long mMaxBackoff;
+    private final long mMaxInterval;
+
+    private volatile DecodeMetrics mMetrics;
+
+    // 清晰度的滑动平均，-1 为还没有数据
+    private int mSharpness = -1;
+    // 最近一次对焦后或解码成功时的清晰度，作为判断清晰度下降的基准
+    private int mReference = -1;
+    private int mFailures;
+    private boolean mFocusing;
+    private long mFocusStart;
+    private long mLastFocus;
+    private boolean mHasFocused;
+    // 对焦后正在判断效果：对焦前的清晰度和已统计的帧数
+    private boolean mEvaluating;
+    private int mBefore;
+    private int mEvaluated;
+    private long mBackoff;
+    private long mBackoffUntil;
+
+    private FocusPolicy(Builder builder) {
+        mMinSharpness = builder.mMinSharpness;
+        mDropPercent = builder.mDropPercent;
+        mMaxFailures = builder.mMaxFailures;
+        mMinBackoff = builder.mMinBackoff * 1000000L;
+        mMaxBackoff = builder.mMaxBackoff * 1000000L;
+        mMaxInterval = builder.mMaxInterval * 1000000L;
+    }
+
+    /**
+     * 设置决策的统计对象，对焦耗时计入 STAGE_FOCUS，各项决策计入 COUNTER_FOCUS_* 计数
+     * @param metrics 统计对象，为null时不统计
+     */
+    public void setMetrics(DecodeMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 记录一帧的清晰度
+     * @param sharpness 清晰度，0~100；为负数时表示无法判断，忽略
+     * @param now 当前时间，System.nanoTime()
+     */
+    public synchronized void onFrame(int sharpness, long now) {
+        if (sharpness < 0 || mFocusing) {
+            return;
+        }
+        mSharpness = mSharpness < 0 ? sharpness : (mSharpness * 3 + sharpness + 2) / 4;
+        if (mEvaluating) {
+            if (++mEvaluated >= EVALUATE_FRAMES) {
+                evaluate(improved(), now);
+            }
+        } else if (mSharpness > mReference) {
+            mReference = mSharpness;
+        }
+    }
+
+    /**
+     * 记录一帧的解码结果。未解码的帧（如被预检跳过）不应记录。
+     * @param decoded 是否解码成功
+     * @param now 当前时间，System.nanoTime()
+     */
+    public synchronized void onDecodeResult(boolean decoded, long now) {
+        if (decoded) {
+            mFailures = 0;
+            if (mEvaluating) {
+                evaluate(true, now);
+            }
+        } else {
+            mFailures++;
+        }
+    }
+
+    /**
+     * 判断现在是否需要对焦。返回true时调用方应立即对焦，并在完成后调用 onFocusCompleted()。
+     * @param now 当前时间，System.nanoTime()
+     * @return 是否需要对焦
+     */
+    public synchronized boolean shouldFocus(long now) {
+        if (mFocusing) {
+            if (now - mFocusStart < FOCUS_TIMEOUT) {
+                return false;
+            }
+            // 没有收到完成回调，如对焦被取消
+            onFocusCompleted(false, now);
+        }
+        if (mEvaluating) {
+            if (now - mLastFocus < FOCUS_TIMEOUT) {
+                // 等待对焦后的帧
+                return false;
+            }
+            // 帧按取帧周期到达，超时前可能不足 EVALUATE_FRAMES 帧，只按实际收到的帧判断；一帧都没有时视为无效
+            evaluate(mEvaluated > 0 && improved(), now);
+        }
+        final int counter;
+        if (mSharpness < 0) {
+            // 还没有可以判断的帧，如刚开启相机或对着没有纹理的画面
+            counter = DecodeMetrics.COUNTER_FOCUS_IDLE;
+        } else if (mFailures >= mMaxFailures) {
+            counter = DecodeMetrics.COUNTER_FOCUS_FAILURES;
+        } else if (mSharpness < mMinSharpness || mSharpness * 100 < mReference * mDropPercent) {
+            counter = DecodeMetrics.COUNTER_FOCUS_BLURRY;
+        } else if (mMaxInterval > 0 && (!mHasFocused || now - mLastFocus >= mMaxInterval)) {
+            counter = DecodeMetrics.COUNTER_FOCUS_IDLE;
+        } else {
+            increment(DecodeMetrics.COUNTER_FOCUS_SKIPPED_SHARP);
+            return false;
+        }
+        if (mHasFocused && now - mBackoffUntil < 0) {
+            increment(DecodeMetrics.COUNTER_FOCUS_SKIPPED_BACKOFF);
+            return false;
+        }
+        increment(counter);
+        mFocusing = true;
+        mFocusStart = now;
+        mEvaluating = false;
+        return true;
+    }
+
+    /**
+     * @return 是否正在等待对焦完成，这期间的帧处于对焦扫描中，不应交给解码器
+     */
+    public synchronized boolean isFocusing() {
+        return mFocusing;
+    }
+
+    /**
+     * 对焦完成
+     * @param success 相机报告是否对焦成功
+     * @param now 当前时间，System.nanoTime()
+     */
+    public synchronized void onFocusCompleted(boolean success, long now) {
+        if (!mFocusing) {
+            return;
+        }
+        final DecodeMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.record(DecodeMetrics.STAGE_FOCUS, now - mFocusStart);
+        }
+        mFocusing = false;
+        mHasFocused = true;
+        mLastFocus = now;
+        mFailures = 0;
+        // 对焦前的清晰度作为对比基准，之后几帧重新统计
+        mBefore = mSharpness;
+        mSharpness = -1;
+        mEvaluating = true;
+        mEvaluated = 0;
+    }
+
+    /**
+     * 清除所有记录，如相机重新启动后
+     */
+    public synchronized void reset() {
+        mSharpness = -1;
+        mReference = -1;
+        mFailures = 0;
+        mFocusing = false;
+        mHasFocused = false;
+        mEvaluating = false;
+        mBackoff = 0;
+    }
+
+    /**
+     * 对焦后的清晰度是否比对焦前有明显改善；对焦前没有数据时与清晰度下限比较
+     */
+    private boolean improved() {
+        return mBefore < 0 ? mSharpness >= mMinSharpness
+                : mSharpness * 100 >= mBefore * (100 + IMPROVEMENT_PERCENT);
+    }
+
+    /**
+     * 对焦有效时清除退避，无效时延长退避期；对焦后的清晰度作为新的基准
+     */
+    private void evaluate(boolean improved, long now) {
+        mEvaluating = false;
+        if (improved) {
+            mBackoff = 0;
+        } else {
+            mBackoff = mBackoff == 0 ? mMinBackoff : Math.min(mMaxBackoff, mBackoff * 2);
+            mBackoffUntil = now + mBackoff;
+            increment(DecodeMetrics.COUNTER_FOCUS_INEFFECTIVE);
+        }
+        mReference = mSharpness;
+    }
+
+    private void increment(int counter) {
+        final DecodeMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.increment(counter);
+        }
+    }
+
+    public static class Builder {
+
+        private int mMinSharpness = 20;
+        private int mDropPercent = 70;
+        private int mMaxFailures = 8;
+        private int mMinBackoff = 1000;
+        private int mMaxBackoff = 8000;
+        private int mMaxInterval = 0;
+
+        /**
+         * 设置清晰度下限，低于此值时对焦
+         * @param sharpness 0~100，默认20
+         * @return Builder，用于链式调用
+         */
+        public Builder setMinSharpness(int sharpness) {
+            if (sharpness < 0 || sharpness > 100) {
+                throw new IllegalArgumentException("Illegal sharpness: " + sharpness);
+            }
+            mMinSharpness = sharpness;
+            return this;
+        }
+
+        /**
+         * 设置清晰度下降的比例，低于对焦后清晰度的此比例时对焦
+         * @param percent 1~100，默认70
+         * @return Builder，用于链式调用
+         */
+        public Builder setDropPercent(int percent) {
+            if (percent < 1 || percent > 100) {
+                throw new IllegalArgumentException("Illegal drop percent: " + percent);
+            }
+            mDropPercent = percent;
+            return this;
+        }
+
+        /**
+         * 设置连续解码失败多少帧后对焦
+         * @param failures 帧数，默认8
+         * @return Builder，用于链式调用
+         */
+        public Builder setMaxFailures(int failures) {
+            if (failures < 1) {
+                throw new IllegalArgumentException("Illegal max failures: " + failures);
+            }
+            mMaxFailures = failures;
+            return this;
+        }
+
+        /**
+         * 设置对焦无效时的退避时间，连续无效时从最短时间开始逐次加倍
+         * @param min 最短退避时间，单位：毫秒，默认1000
+         * @param max 最长退避时间，单位：毫秒，默认8000
+         * @return Builder，用于链式调用
+         */
+        public Builder setBackoff(int min, int max) {
+            if (min < 1 || max < min) {
+                throw new IllegalArgumentException("Illegal backoff: " + min + " ~ " + max);
+            }
+            mMinBackoff = min;
+            mMaxBackoff = max;
+            return this;
+        }
+
+        /**
+         * 设置两次对焦的最长间隔，画面一直清晰时也按此间隔对焦一次
+         * @param interval 单位：毫秒，默认0，即画面清晰时不对焦
+         * @return Builder，用于链式调用
+         */
+        public Builder setMaxInterval(int interval) {
+            if (interval < 0) {
+                throw new IllegalArgumentException("Illegal max interval: " + interval);
+            }
+            mMaxInterval = interval;
+            return this;
+        }
+
+        public FocusPolicy build() {
+            return new FocusPolicy(this);
+        }
+    }
+}
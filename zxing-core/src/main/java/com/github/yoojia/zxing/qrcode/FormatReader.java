@@ -0,0 +1,285 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.oned.CodaBarReader;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code39Reader;
+import com.google.zxing.oned.Code93Reader;
+import com.google.zxing.oned.ITFReader;
+import com.google.zxing.oned.MultiFormatUPCEANReader;
+import com.google.zxing.oned.OneDReader;
+import com.google.zxing.oned.rss.RSS14Reader;
+import com.google.zxing.oned.rss.expanded.RSSExpandedReader;
+import com.google.zxing.pdf417.PDF417Reader;
+
+import java.util.Map;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 单一码制的解码器，记录最近的命中率和每次尝试的耗时，用于决定多种码制之间的尝试顺序：
+ * 按“命中率 / 耗时”从高到低尝试，即单位时间内最可能解码成功的码制优先。
+ * 命中率和耗时都是指数滑动平均，画面中的码制变化后顺序随之调整。从未尝试过的码制优先尝试一次以获得统计。
+ */
+abstract class FormatReader {
+
+    // 滑动平均中新样本的权重
+    private static final double WEIGHT = 0.1;
+
+    private double mHitRate = 0.5;
+    private double mCost = 0;
+
+    /**
+     * 解码一次
+     * @param image 二值图像，二值化结果已缓存
+     * @param hints 解码参数
+     * @return 解码结果
+     * @throws ReaderException 没有找到或无法解码
+     */
+    abstract Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws ReaderException;
+
+    /**
+     * @return 是否需要整幅二值图像。只扫描若干行的一维码不需要
+     */
+    boolean needsMatrix() {
+        return true;
+    }
+
+    /**
+     * 记录一次尝试的结果
+     * @param hit 是否解码成功
+     * @param nanos 耗时，单位：纳秒
+     */
+    final void onAttempt(boolean hit, long nanos) {
+        mHitRate += ((hit ? 1 : 0) - mHitRate) * WEIGHT;
+        mCost = mCost == 0 ? nanos : mCost + (nanos - mCost) * WEIGHT;
+    }
+
+    /**
+     * @return 单位耗时的命中率，越大越优先；未尝试过时为最大值
+     */
+    final double priority() {
+        return mCost == 0 ? Double.MAX_VALUE : mHitRate / mCost;
+    }
+
+    /**
+     * 按优先级从高到低排序。数组很小，使用插入排序，优先级相同时保持原顺序，不分配对象。
+     */
+    static void sort(FormatReader[] readers) {
+        for (int i = 1; i < readers.length; i++) {
+            final FormatReader reader = readers[i];
+            final double priority = reader.priority();
+            int j = i - 1;
+            while (j >= 0 && readers[j].priority() < priority) {
+                readers[j + 1] = readers[j];
+                j--;
+            }
+            readers[j + 1] = reader;
+        }
+    }
+
+    /**
+     * 创建二维码以外的码制的解码器。EAN/UPC 系列共用一个解码器，只需要为其中一种码制创建。
+     * @param format 码制
+     * @param hints 解码参数，POSSIBLE_FORMATS 为全部启用的码制
+     * @param scanlines 一维码共用的扫描行
+     * @return 解码器
+     */
+    static FormatReader create(BarcodeFormat format, Map<DecodeHintType, ?> hints, Scanlines scanlines) {
+        switch (format) {
+            case DATA_MATRIX:
+                return new MatrixReader(new DataMatrixReader());
+            case AZTEC:
+                return new MatrixReader(new AztecReader());
+            case PDF_417:
+                return new MatrixReader(new PDF417Reader());
+            case CODE_128:
+                return new ScanlineReader(new Code128Reader(), scanlines);
+            case CODE_39:
+                return new ScanlineReader(new Code39Reader(), scanlines);
+            case CODE_93:
+                return new ScanlineReader(new Code93Reader(), scanlines);
+            case ITF:
+                return new ScanlineReader(new ITFReader(), scanlines);
+            case CODABAR:
+                return new ScanlineReader(new CodaBarReader(), scanlines);
+            case RSS_14:
+                return new ScanlineReader(new RSS14Reader(), scanlines);
+            case RSS_EXPANDED:
+                return new ScanlineReader(new RSSExpandedReader(), scanlines);
+            case EAN_13:
+            case EAN_8:
+            case UPC_A:
+            case UPC_E:
+                // 按 hints 中的 POSSIBLE_FORMATS 只尝试启用的 EAN/UPC 码制
+                return new ScanlineReader(new MultiFormatUPCEANReader(hints), scanlines);
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    /**
+     * 二维码制（DataMatrix、Aztec、PDF417），使用整幅二值图像
+     */
+    private static final class MatrixReader extends FormatReader {
+
+        private final Reader mReader;
+
+        MatrixReader(Reader reader) {
+            mReader = reader;
+        }
+
+        @Override
+        Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws ReaderException {
+            try {
+                return mReader.decode(image, hints);
+            } finally {
+                mReader.reset();
+            }
+        }
+    }
+
+    /**
+     * 一维码，只扫描 Scanlines 中的若干行，每行正反两个方向各尝试一次。
+     * RSS 解码器在同一幅图像的各行之间保留半对、已扫描行等状态，所有行尝试完之后才 reset()，
+     * 上一幅图像的状态不会与当前图像组合，也不会随扫描时间增长。
+     */
+    static final class ScanlineReader extends FormatReader {
+
+        private final OneDReader mReader;
+        private final Scanlines mScanlines;
+
+        ScanlineReader(OneDReader reader, Scanlines scanlines) {
+            mReader = reader;
+            mScanlines = scanlines;
+        }
+
+        @Override
+        boolean needsMatrix() {
+            return false;
+        }
+
+        @Override
+        Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws ReaderException {
+            try {
+                return decodeRows(image, hints);
+            } finally {
+                mReader.reset();
+            }
+        }
+
+        private Result decodeRows(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws ReaderException {
+            final int count = mScanlines.count(image, hints);
+            for (int i = 0; i < count; i++) {
+                final BitArray row = mScanlines.row(image, i);
+                if (row == null) {
+                    continue;
+                }
+                final int y = mScanlines.y(i);
+                try {
+                    return mReader.decodeRow(y, row, hints);
+                } catch (ReaderException re) {
+                    // 反向再试一次，对应倒置的条码
+                }
+                row.reverse();
+                try {
+                    final Result result = mReader.decodeRow(y, row, hints);
+                    // 坐标换算回正向
+                    final ResultPoint[] points = result.getResultPoints();
+                    if (points != null) {
+                        final int width = image.getWidth();
+                        for (int p = 0; p < points.length; p++) {
+                            if (points[p] != null) {
+                                points[p] = new ResultPoint(width - points[p].getX() - 1, points[p].getY());
+                            }
+                        }
+                    }
+                    return result;
+                } catch (ReaderException re) {
+                    // 下一行
+                } finally {
+                    row.reverse();
+                }
+            }
+            throw NotFoundException.getNotFoundInstance();
+        }
+    }
+
+    /**
+     * 一维码共用的扫描行：从中间行开始上下交替，同一幅图像的每一行只二值化一次
+     */
+    static final class Scanlines {
+
+        // 默认扫描中间行和上下各两行，间隔为图像高度的 1/8
+        private static final int LINES = 5;
+        // TRY_HARDER 时扫描中间行和上下各七行，间隔为图像高度的 1/16
+        private static final int TRY_HARDER_LINES = 15;
+
+        private final BitArray[] mRows = new BitArray[TRY_HARDER_LINES];
+        private final boolean[] mLoaded = new boolean[TRY_HARDER_LINES];
+        private final boolean[] mMissing = new boolean[TRY_HARDER_LINES];
+        private BinaryBitmap mImage;
+        private int mCount;
+        private int mMiddle;
+        private int mStep;
+
+        /**
+         * @return 图像的扫描行数；图像变化时清空缓存
+         */
+        int count(BinaryBitmap image, Map<DecodeHintType, ?> hints) {
+            if (image != mImage) {
+                mImage = image;
+                final boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
+                mCount = tryHarder ? TRY_HARDER_LINES : LINES;
+                mMiddle = image.getHeight() / 2;
+                mStep = Math.max(1, image.getHeight() / (tryHarder ? 16 : 8));
+                for (int i = 0; i < TRY_HARDER_LINES; i++) {
+                    mLoaded[i] = false;
+                }
+            }
+            return mCount;
+        }
+
+        /**
+         * @return 第 index 条扫描行的行号：0 为中间行，之后依次为上、下、上、下……
+         */
+        int y(int index) {
+            final int offset = (index + 1) / 2;
+            final int y = mMiddle + ((index & 1) == 0 ? offset : -offset) * mStep;
+            return Math.max(0, Math.min(mImage.getHeight() - 1, y));
+        }
+
+        /**
+         * @return 第 index 条扫描行的二值化结果，无法二值化时返回null
+         */
+        BitArray row(BinaryBitmap image, int index) {
+            if (!mLoaded[index]) {
+                mLoaded[index] = true;
+                try {
+                    mRows[index] = image.getBlackRow(y(index), mRows[index]);
+                    mMissing[index] = false;
+                } catch (NotFoundException e) {
+                    mMissing[index] = true;
+                }
+            }
+            return mMissing[index] ? null : mRows[index];
+        }
+
+        /**
+         * 解码结束，释放对图像的引用
+         */
+        void clear() {
+            mImage = null;
+        }
+    }
+}
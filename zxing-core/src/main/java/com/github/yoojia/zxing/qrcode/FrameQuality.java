@@ -0,0 +1,269 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 预览帧质量预检。在解码区域内抽样约32行、32列，计算平均亮度、对比度（标准差）和清晰度，
+ * 过暗、过亮、没有对比度或模糊的帧不再交给解码器，省去一次二值化和定位的代价。
+ *
+ * 清晰度为相邻像素亮度差的平方和除以绝对值之和，即边缘处每个像素的平均亮度跳变，
+ * 再除以对比度归一化为百分比：边缘在一个像素内完成跳变时接近100，边缘被模糊得越宽，数值越低。
+ * 计算只读取亮度数据，多个线程可以共用一个实例。
+ */
+public class FrameQuality {
+
+    /**
+     * 可以解码
+     */
+    public static final int RESULT_OK = 0;
+    /**
+     * 平均亮度低于下限
+     */
+    public static final int RESULT_DARK = 1;
+    /**
+     * 平均亮度高于上限
+     */
+    public static final int RESULT_BRIGHT = 2;
+    /**
+     * 对比度低于下限，如对着白墙或桌面
+     */
+    public static final int RESULT_FLAT = 3;
+    /**
+     * 清晰度低于下限，如对焦未完成或手持晃动
+     */
+    public static final int RESULT_BLURRY = 4;
+
+    // 每个方向抽样的行数、列数
+    private static final int SAMPLES = 32;
+    // 对比度低于此值时亮度差主要是噪点，清晰度没有意义
+    private static final int MIN_MEASURABLE_CONTRAST = 8;
+
+    private final int mMinMean;
+    private final int mMaxMean;
+    private final int mMinContrast;
+    private final int mMinSharpness;
+
+    private FrameQuality(Builder builder) {
+        mMinMean = builder.mMinMean;
+        mMaxMean = builder.mMaxMean;
+        mMinContrast = builder.mMinContrast;
+        mMinSharpness = builder.mMinSharpness;
+    }
+
+    /**
+     * 检查亮度源的质量
+     * @param source 亮度源。YUVLuminanceSource 直接读取裁剪区域的Y分量，其它亮度源读取 getMatrix()
+     * @return RESULT_OK, RESULT_DARK, RESULT_BRIGHT, RESULT_FLAT 或 RESULT_BLURRY
+     */
+    public int check(LuminanceSource source) {
+        return check(source, null);
+    }
+
+    /**
+     * 检查亮度源的质量，同时计算清晰度。只扫描一次抽样行、列，比分别调用 check() 和 sharpness() 少一次扫描。
+     * @param source 亮度源。YUVLuminanceSource 直接读取裁剪区域的Y分量，其它亮度源读取 getMatrix()
+     * @param sharpness 不为null时 sharpness[0] 写入清晰度，与 sharpness(source) 的结果相同
+     * @return RESULT_OK, RESULT_DARK, RESULT_BRIGHT, RESULT_FLAT 或 RESULT_BLURRY
+     */
+    public int check(LuminanceSource source, int[] sharpness) {
+        if (source instanceof YUVLuminanceSource) {
+            return ((YUVLuminanceSource) source).checkQuality(this, sharpness);
+        }
+        return check(source.getMatrix(), source.getWidth(), 0, 0, source.getWidth(), source.getHeight(), sharpness);
+    }
+
+    /**
+     * 检查亮度数据中指定区域的质量。旋转不影响结果，因此可以直接使用未旋转的预览帧坐标。
+     * @param luminances 亮度数据，按行排列
+     * @param dataWidth 亮度数据宽度
+     * @param left 区域左边界
+     * @param top 区域上边界
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return RESULT_OK, RESULT_DARK, RESULT_BRIGHT, RESULT_FLAT 或 RESULT_BLURRY
+     */
+    public int check(byte[] luminances, int dataWidth, int left, int top, int width, int height) {
+        return check(luminances, dataWidth, left, top, width, height, null);
+    }
+
+    /**
+     * 检查亮度数据中指定区域的质量，同时计算清晰度
+     * @param sharpness 不为null时 sharpness[0] 写入清晰度，与 sharpness() 的结果相同
+     * @return RESULT_OK, RESULT_DARK, RESULT_BRIGHT, RESULT_FLAT 或 RESULT_BLURRY
+     */
+    public int check(byte[] luminances, int dataWidth, int left, int top, int width, int height, int[] sharpness) {
+        if (width < 2 || height < 2) {
+            if (sharpness != null) {
+                sharpness[0] = -1;
+            }
+            return RESULT_FLAT;
+        }
+        final Stats stats = new Stats();
+        stats.scan(luminances, dataWidth, left, top, width, height);
+        if (sharpness != null) {
+            sharpness[0] = stats.measurableSharpness();
+        }
+        final long mean = stats.mean();
+        if (mean < mMinMean) {
+            return RESULT_DARK;
+        }
+        if (mean > mMaxMean) {
+            return RESULT_BRIGHT;
+        }
+        final double contrast = stats.contrast();
+        if (contrast < mMinContrast) {
+            return RESULT_FLAT;
+        }
+        if (mMinSharpness > 0 && stats.sharpness(contrast) < mMinSharpness) {
+            return RESULT_BLURRY;
+        }
+        return RESULT_OK;
+    }
+
+    /**
+     * 计算亮度源的清晰度，与 check() 使用相同的抽样和算法
+     * @param source 亮度源。YUVLuminanceSource 直接读取裁剪区域的Y分量，其它亮度源读取 getMatrix()
+     * @return 清晰度，0~100；画面没有对比度、无法判断时返回-1
+     */
+    public static int sharpness(LuminanceSource source) {
+        if (source instanceof YUVLuminanceSource) {
+            return ((YUVLuminanceSource) source).measureSharpness();
+        }
+        return sharpness(source.getMatrix(), source.getWidth(), 0, 0, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * 计算亮度数据中指定区域的清晰度
+     * @return 清晰度，0~100；画面没有对比度、无法判断时返回-1
+     */
+    public static int sharpness(byte[] luminances, int dataWidth, int left, int top, int width, int height) {
+        if (width < 2 || height < 2) {
+            return -1;
+        }
+        final Stats stats = new Stats();
+        stats.scan(luminances, dataWidth, left, top, width, height);
+        return stats.measurableSharpness();
+    }
+
+    /**
+     * 抽样行、列上的亮度和亮度差统计
+     */
+    private static final class Stats {
+
+        long count;
+        long sum;
+        long sumSquares;
+        long gradients;
+        long gradientSquares;
+
+        void scan(byte[] luminances, int dataWidth, int left, int top, int width, int height) {
+            final int step = Math.max(1, Math.min(width, height) / SAMPLES);
+            // 抽样行上逐像素计算水平亮度差，抽样列上逐像素计算垂直亮度差；
+            // 逐像素而不是按网格计算，避免抽样间隔与二维码模块尺寸对齐时漏掉所有边缘
+            for (int y = top + step / 2; y < top + height; y += step) {
+                final int row = y * dataWidth;
+                int previous = luminances[row + left] & 0xFF;
+                for (int x = left + 1; x < left + width; x++) {
+                    final int value = luminances[row + x] & 0xFF;
+                    final int delta = value - previous;
+                    count++;
+                    sum += value;
+                    sumSquares += value * value;
+                    gradients += Math.abs(delta);
+                    gradientSquares += delta * delta;
+                    previous = value;
+                }
+            }
+            // 垂直方向按行遍历抽样列，顺序读取内存
+            for (int y = top + 1; y < top + height; y++) {
+                final int row = y * dataWidth;
+                for (int x = left + step / 2; x < left + width; x += step) {
+                    final int delta = (luminances[row + x] & 0xFF) - (luminances[row - dataWidth + x] & 0xFF);
+                    gradients += Math.abs(delta);
+                    gradientSquares += delta * delta;
+                }
+            }
+        }
+
+        long mean() {
+            return sum / count;
+        }
+
+        double contrast() {
+            final long mean = mean();
+            return Math.sqrt(Math.max(0, (double) sumSquares / count - (double) mean * mean));
+        }
+
+        /**
+         * @return 清晰度，0~100；对比度过低、无法判断时返回-1
+         */
+        int measurableSharpness() {
+            final double contrast = contrast();
+            if (contrast < MIN_MEASURABLE_CONTRAST) {
+                return -1;
+            }
+            return (int) Math.min(100, sharpness(contrast));
+        }
+
+        double sharpness(double contrast) {
+            // 黑白各半时亮度差约为标准差的两倍
+            final double edge = gradients == 0 ? 0 : (double) gradientSquares / gradients;
+            return edge * 100 / (2 * contrast);
+        }
+    }
+
+    public static class Builder {
+
+        private int mMinMean = 24;
+        private int mMaxMean = 232;
+        private int mMinContrast = 12;
+        private int mMinSharpness = 10;
+
+        /**
+         * 设置平均亮度范围
+         * @param min 下限，0~255，默认24
+         * @param max 上限，0~255，默认232
+         * @return Builder，用于链式调用
+         */
+        public Builder setMeanRange(int min, int max) {
+            if (min < 0 || max > 255 || min > max) {
+                throw new IllegalArgumentException("Illegal mean range: " + min + " ~ " + max);
+            }
+            mMinMean = min;
+            mMaxMean = max;
+            return this;
+        }
+
+        /**
+         * 设置对比度下限
+         * @param contrast 亮度标准差，默认12，为0时不检查
+         * @return Builder，用于链式调用
+         */
+        public Builder setMinContrast(int contrast) {
+            if (contrast < 0 || contrast > 128) {
+                throw new IllegalArgumentException("Illegal contrast: " + contrast);
+            }
+            mMinContrast = contrast;
+            return this;
+        }
+
+        /**
+         * 设置清晰度下限
+         * @param sharpness 0~100，默认10，为0时不检查
+         * @return Builder，用于链式调用
+         */
+        public Builder setMinSharpness(int sharpness) {
+            if (sharpness < 0 || sharpness > 100) {
+                throw new IllegalArgumentException("Illegal sharpness: " + sharpness);
+            }
+            mMinSharpness = sharpness;
+            return this;
+        }
+
+        public FrameQuality build() {
+            return new FrameQuality(this);
+        }
+    }
+}
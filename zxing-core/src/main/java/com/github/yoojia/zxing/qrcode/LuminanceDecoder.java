@@ -0,0 +1,740 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DecoderResult;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.google.zxing.qrcode.decoder.QRCodeDecoderMetaData;
+import com.google.zxing.qrcode.detector.Detector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 亮度图像解码成文本信息，不依赖 Android 平台。解码器复用内部的工作缓冲区，同一个实例不能在多个线程中同时使用。
+ * 只解码二维码时，亮度、金字塔、跟踪窗口和二值化矩阵都复用，稳态解码剩余的分配在 ZXing 的定位和解码内部；
+ * 多码制解码和 decodeMultiple() 每次尝试仍新建 ZXing 的二值化器和 BinaryBitmap。
+ * 默认只解码二维码；启用多种码制时，按各码制最近的命中率和解码耗时决定尝试顺序，而不是 MultiFormatReader 的固定顺序。
+ */
+public class LuminanceDecoder {
+
+    private static final Logger LOGGER = Logger.getLogger(LuminanceDecoder.class.getName());
+
+    /**
+     * 解码级别：GlobalHistogramBinarizer，代价最低，适合清晰、光照均匀的二维码
+     */
+    public static final int LEVEL_GLOBAL_HISTOGRAM = 0;
+    /**
+     * 解码级别：HybridBinarizer，适合光照不均匀的画面
+     */
+    public static final int LEVEL_HYBRID = 1;
+    /**
+     * 解码级别：HybridBinarizer，并启用 TRY_HARDER
+     */
+    public static final int LEVEL_TRY_HARDER = 2;
+    /**
+     * 解码级别：反色后以 TRY_HARDER 解码，用于黑底白码
+     */
+    public static final int LEVEL_INVERTED = 3;
+
+    // 金字塔最多层数：原图、1/2、1/4
+    private static final int MAX_PYRAMID_LEVELS = 3;
+    // 缩小后短边低于此值时不再尝试该层，二维码模块已过小而无法定位
+    private static final int MIN_PYRAMID_SIZE = 120;
+    // 跟踪窗口在定位点外框四周扩展的比例（百分比）：定位图案中心到二维码边缘约3.5个模块，
+    // 再加静区和两帧之间的移动量
+    private static final int TRACK_PADDING_PERCENT = 75;
+    // 跟踪窗口面积超过原图的此比例（百分比）时直接搜索整帧
+    private static final int TRACK_MAX_AREA_PERCENT = 60;
+
+    private final Map<DecodeHintType, Object> mHints;
+    private final Map<DecodeHintType, Object> mTryHarderHints;
+    private final com.google.zxing.qrcode.decoder.Decoder mQRCodeDecoder = new com.google.zxing.qrcode.decoder.Decoder();
+    private final QRCodeMultiReader mMultiReader = new QRCodeMultiReader();
+    private final MatrixBinarizer mBinarizer = new MatrixBinarizer();
+    private final DecodeMetrics mMetrics;
+
+    // 只解码二维码时为null，直接使用二维码流程
+    private final FormatReader[] mReaders;
+    private final FormatReader.Scanlines mScanlines = new FormatReader.Scanlines();
+    private final boolean mNeedsMatrix;
+
+    private final AdaptiveLevel mLevels;
+    // 反色级别不是低级别的超集，不参与起始级别的调整，只在正常级别都失败后额外尝试
+    private final boolean mInvertedFallback;
+    private final AdaptiveLevel mScales;
+    private final boolean mAdaptive;
+    private final boolean mTracking;
+
+    // 上一次解码结果定位点的外框，原图坐标；mTrackWidth 为0时没有跟踪目标
+    private int mTrackLeft, mTrackTop, mTrackRight, mTrackBottom;
+    private int mTrackWidth, mTrackHeight;
+    // 跟踪目标是否为反色二维码，跟踪窗口以反色级别解码
+    private boolean mTrackInverted;
+
+    private byte[] mLuminances = new byte[0];
+    private byte[] mWindow = new byte[0];
+    private final byte[][] mPyramid = new byte[MAX_PYRAMID_LEVELS][0];
+    private final int[] mPyramidWidth = new int[MAX_PYRAMID_LEVELS];
+    private final int[] mPyramidHeight = new int[MAX_PYRAMID_LEVELS];
+
+    protected LuminanceDecoder(Builder builder) {
+        mHints = new EnumMap<>(DecodeHintType.class);
+        mHints.put(DecodeHintType.CHARACTER_SET, builder.mCharset);
+        final Set<BarcodeFormat> formats = builder.mFormats;
+        final boolean qrCodeOnly = formats.size() == 1 && formats.contains(BarcodeFormat.QR_CODE);
+        if (!qrCodeOnly) {
+            mHints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.copyOf(formats));
+        }
+        mTryHarderHints = new EnumMap<>(mHints);
+        mTryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        mMetrics = builder.mMetrics;
+        mInvertedFallback = builder.mHighestLevel == LEVEL_INVERTED && builder.mLowestLevel < LEVEL_INVERTED;
+        mLevels = new AdaptiveLevel(builder.mLowestLevel, mInvertedFallback ? LEVEL_TRY_HARDER : builder.mHighestLevel,
+                builder.mProbeAfter, builder.mResetAfter);
+        // 金字塔层级：0 为最小的一层，pyramidLevels - 1 为原图
+        mScales = new AdaptiveLevel(0, builder.mPyramidLevels - 1,
+                builder.mProbeAfter, builder.mResetAfter);
+        mAdaptive = builder.mAdaptive;
+        mTracking = builder.mTracking;
+        if (qrCodeOnly) {
+            mReaders = null;
+            mNeedsMatrix = true;
+        } else {
+            final List<FormatReader> readers = new ArrayList<>(formats.size());
+            if (formats.contains(BarcodeFormat.QR_CODE)) {
+                readers.add(new QRCodeFormatReader());
+            }
+            boolean upcean = false;
+            boolean needsMatrix = false;
+            for (BarcodeFormat format : formats) {
+                if (format == BarcodeFormat.QR_CODE) {
+                    continue;
+                }
+                if (isUPCEAN(format)) {
+                    // EAN/UPC 共用一个解码器
+                    if (upcean) {
+                        continue;
+                    }
+                    upcean = true;
+                }
+                final FormatReader reader = FormatReader.create(format, mHints, mScanlines);
+                needsMatrix |= reader.needsMatrix();
+                readers.add(reader);
+            }
+            mReaders = readers.toArray(new FormatReader[readers.size()]);
+            mNeedsMatrix = needsMatrix || formats.contains(BarcodeFormat.QR_CODE);
+        }
+    }
+
+    /**
+     * 解码 ARGB 像素数组
+     * @param pixels 像素数组，按行排列
+     * @param width 图像宽度
+     * @param height 图像高度
+     * @return 解码文本，如果解码失败，返回null。
+     */
+    public String decode(int[] pixels, int width, int height){
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixels too short for " + width + "x" + height);
+        }
+        final byte[] luminances = obtainLuminances(width * height);
+        toLuminances(pixels, 0, luminances, 0, width * height);
+        return decode(new YUVLuminanceSource(luminances, width, height, 0, 0, width, height, 0));
+    }
+
+    /**
+     * 解码亮度源，如相机预览帧的Y分量
+     * @param source 亮度源
+     * @return 解码文本，如果解码失败，返回null。
+     */
+    public String decode(LuminanceSource source){
+        final DecodeResult result = decodeResult(source);
+        return result == null ? null : result.getText();
+    }
+
+    /**
+     * 解码亮度源，返回包含定位点、码制和耗时的结果。启用跟踪时先在上一次结果附近的窗口中解码，
+     * 失败后才搜索整帧。
+     * @param source 亮度源
+     * @return 解码结果，如果解码失败，返回null。
+     */
+    public DecodeResult decodeResult(LuminanceSource source){
+        final long start = System.nanoTime();
+        source = compact(source, start);
+        // 从起始级别逐级尝试，只在低级别失败时才付出更高级别的代价
+        final int startLevel = mAdaptive ? mLevels.start() : mLevels.lowest();
+        if (mTracking && mTrackWidth > 0) {
+            final DecodeResult tracked = decodeTracked(source, mTrackInverted ? LEVEL_INVERTED : startLevel, start);
+            if (tracked != null) {
+                return tracked;
+            }
+        }
+        // 先尝试缩小后的图像，缩小的图像只以起始级别尝试，失败后才回到原图
+        final int fullScale = mScales.highest();
+        final int startScale = mAdaptive ? mScales.start() : mScales.lowest();
+        buildPyramid(source, fullScale - startScale);
+        ReaderException notFound = null;
+        for (int scale = startScale; scale <= fullScale; scale++) {
+            final int halvings = fullScale - scale;
+            final LuminanceSource input;
+            if (halvings == 0) {
+                input = source;
+            } else if (mPyramidWidth[halvings] > 0) {
+                input = new YUVLuminanceSource(mPyramid[halvings], mPyramidWidth[halvings], mPyramidHeight[halvings],
+                        0, 0, mPyramidWidth[halvings], mPyramidHeight[halvings], 0);
+            } else {
+                continue;
+            }
+            // 原图逐级尝试到最高级别，正常级别都失败后再尝试反色
+            final int highestLevel = halvings == 0 ? highestLevel() : startLevel;
+            for (int level = startLevel; level <= highestLevel; level++) {
+                if ((scale > startScale || level > startLevel) && Thread.currentThread().isInterrupted()) {
+                    // 解码已被取消，不再尝试代价更高的组合
+                    return null;
+                }
+                try {
+                    final Result rawResult = decode(input, level);
+                    onLevelSuccess(level);
+                    mScales.onSuccess(scale);
+                    // 缩小图像中的坐标换算回原图
+                    final ResultPoint[] points = transform(rawResult.getResultPoints(), 1 << halvings, 0, 0);
+                    track(points, source.getWidth(), source.getHeight(), level);
+                    return newResult(rawResult, points, level, false, start);
+                } catch (ReaderException re) {
+                    notFound = re;
+                }
+            }
+        }
+        mLevels.onFailure();
+        mScales.onFailure();
+        mTrackWidth = 0;
+        record(DecodeMetrics.STAGE_TOTAL, start);
+        LOGGER.log(Level.FINE, "QRCode not found", notFound);
+        return null;
+    }
+
+    /**
+     * 解码亮度源中的所有二维码，如货架、票据整页。从起始级别逐级尝试，返回第一个找到二维码的级别的全部结果。
+     * 多码模式只使用原图，不使用金字塔和跟踪窗口，并且只解码二维码，不受 Builder.setFormats() 影响。
+     * @param source 亮度源
+     * @return 解码结果，定位点为亮度源中的坐标；没有找到二维码时返回空列表
+     */
+    public List<DecodeResult> decodeMultiple(LuminanceSource source){
+        final long start = System.nanoTime();
+        source = compact(source, start);
+        final int startLevel = mAdaptive ? mLevels.start() : mLevels.lowest();
+        for (int level = startLevel; level <= highestLevel(); level++) {
+            if (level > startLevel && Thread.currentThread().isInterrupted()) {
+                return Collections.emptyList();
+            }
+            final Map<DecodeHintType, Object> hints = level >= LEVEL_TRY_HARDER ? mTryHarderHints : mHints;
+            final LuminanceSource input = level == LEVEL_INVERTED ? source.invert() : source;
+            final BinaryBitmap bitmap = new BinaryBitmap(level == LEVEL_GLOBAL_HISTOGRAM
+                    ? new GlobalHistogramBinarizer(input) : new HybridBinarizer(input));
+            try {
+                // 二值化结果由 BinaryBitmap 缓存，多码定位和解码时不再重复计算
+                final long mark = System.nanoTime();
+                bitmap.getBlackMatrix();
+                record(DecodeMetrics.STAGE_BINARIZE, mark);
+                final Result[] rawResults = mMultiReader.decodeMultiple(bitmap, hints);
+                onLevelSuccess(level);
+                final long decodeTime = record(DecodeMetrics.STAGE_TOTAL, start) - start;
+                final List<DecodeResult> results = new ArrayList<>(rawResults.length);
+                for (Result rawResult : rawResults) {
+                    results.add(new DecodeResult(rawResult.getText(), rawResult.getRawBytes(),
+                            rawResult.getBarcodeFormat(), rawResult.getResultPoints(), level, false, decodeTime));
+                }
+                return results;
+            } catch (NotFoundException re) {
+                // 尝试更高级别
+            }
+        }
+        mLevels.onFailure();
+        record(DecodeMetrics.STAGE_TOTAL, start);
+        return Collections.emptyList();
+    }
+
+    /**
+     * 裁剪或旋转后的预览帧亮度复制到工作缓冲区，避免每帧分配新的亮度数组；
+     * Y平面亮度源在复制时按行、像素间距读取，不需要先转为连续数组
+     */
+    private LuminanceSource compact(LuminanceSource source, long start) {
+        if (source instanceof YUVLuminanceSource) {
+            source = ((YUVLuminanceSource) source).compact(obtainLuminances(source.getWidth() * source.getHeight()));
+            record(DecodeMetrics.STAGE_CONVERT, start);
+        } else if (source instanceof PlaneLuminanceSource) {
+            source = ((PlaneLuminanceSource) source).compact(obtainLuminances(source.getWidth() * source.getHeight()));
+            record(DecodeMetrics.STAGE_CONVERT, start);
+        }
+        return source;
+    }
+
+    /**
+     * 在上一次结果定位点外框扩展后的窗口中，以起始级别解码一次
+     * @return 解码结果；窗口过大、尺寸变化或解码失败时返回null
+     */
+    private DecodeResult decodeTracked(LuminanceSource source, int level, long start) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        if (width != mTrackWidth || height != mTrackHeight || !source.isCropSupported()) {
+            mTrackWidth = 0;
+            return null;
+        }
+        final int padding = Math.max(mTrackRight - mTrackLeft, mTrackBottom - mTrackTop) * TRACK_PADDING_PERCENT / 100;
+        final int left = Math.max(0, mTrackLeft - padding);
+        final int top = Math.max(0, mTrackTop - padding);
+        final int right = Math.min(width, mTrackRight + padding);
+        final int bottom = Math.min(height, mTrackBottom + padding);
+        if ((long) (right - left) * (bottom - top) * 100 > (long) width * height * TRACK_MAX_AREA_PERCENT) {
+            // 二维码已占据画面大部分，跟踪窗口不比整帧省多少
+            return null;
+        }
+        LuminanceSource window = source.crop(left, top, right - left, bottom - top);
+        if (window instanceof YUVLuminanceSource) {
+            // 窗口亮度复制到独立的缓冲区，二值化时不再分配
+            final int size = window.getWidth() * window.getHeight();
+            if (mWindow.length < size) {
+                mWindow = new byte[size];
+            }
+            window = ((YUVLuminanceSource) window).compact(mWindow);
+        }
+        try {
+            final Result rawResult = decode(window, level);
+            onLevelSuccess(level);
+            final ResultPoint[] points = transform(rawResult.getResultPoints(), 1, left, top);
+            track(points, width, height, level);
+            increment(DecodeMetrics.COUNTER_TRACK_HIT);
+            return newResult(rawResult, points, level, true, start);
+        } catch (ReaderException re) {
+            // 跟踪丢失，搜索整帧
+            increment(DecodeMetrics.COUNTER_TRACK_LOST);
+            mTrackWidth = 0;
+            return null;
+        }
+    }
+
+    /**
+     * @return 原图尝试的最高级别：启用反色时为 LEVEL_INVERTED，排在所有正常级别之后
+     */
+    private int highestLevel() {
+        return mInvertedFallback ? LEVEL_INVERTED : mLevels.highest();
+    }
+
+    /**
+     * 解码成功的级别反馈给起始级别的调整；反色只作为额外的一次尝试，不改变正常级别的起点
+     */
+    private void onLevelSuccess(int level) {
+        if (!mInvertedFallback || level != LEVEL_INVERTED) {
+            mLevels.onSuccess(level);
+        }
+    }
+
+    /**
+     * 记录定位点的外框作为下一帧的跟踪目标
+     */
+    private void track(ResultPoint[] points, int width, int height, int level) {
+        if (!mTracking || points == null || points.length == 0) {
+            return;
+        }
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for (ResultPoint point : points) {
+            left = Math.min(left, point.getX());
+            top = Math.min(top, point.getY());
+            right = Math.max(right, point.getX());
+            bottom = Math.max(bottom, point.getY());
+        }
+        mTrackLeft = (int) left;
+        mTrackTop = (int) top;
+        mTrackRight = (int) Math.ceil(right);
+        mTrackBottom = (int) Math.ceil(bottom);
+        mTrackWidth = width;
+        mTrackHeight = height;
+        mTrackInverted = level == LEVEL_INVERTED;
+    }
+
+    private static ResultPoint[] transform(ResultPoint[] points, int scale, int offsetX, int offsetY) {
+        if (points == null || (scale == 1 && offsetX == 0 && offsetY == 0)) {
+            return points;
+        }
+        final ResultPoint[] transformed = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            transformed[i] = new ResultPoint(points[i].getX() * scale + offsetX, points[i].getY() * scale + offsetY);
+        }
+        return transformed;
+    }
+
+    private DecodeResult newResult(Result rawResult, ResultPoint[] points, int level, boolean tracked, long start) {
+        final long decodeTime = record(DecodeMetrics.STAGE_TOTAL, start) - start;
+        return new DecodeResult(rawResult.getText(), rawResult.getRawBytes(), rawResult.getBarcodeFormat(),
+                points, level, tracked, decodeTime);
+    }
+
+    /**
+     * 逐层将亮度图像长宽各缩小一半（2x2 均值），结果保存在复用的缓冲区中。短边过小的层宽度记为0。
+     * @param source 原图
+     * @param depth 需要的层数
+     */
+    private void buildPyramid(LuminanceSource source, int depth) {
+        if (depth == 0) {
+            return;
+        }
+        byte[] src = source.getMatrix();
+        int width = source.getWidth();
+        int height = source.getHeight();
+        for (int i = 1; i <= depth; i++) {
+            final int dstWidth = width / 2;
+            final int dstHeight = height / 2;
+            if (Math.min(dstWidth, dstHeight) < MIN_PYRAMID_SIZE) {
+                for (int j = i; j <= depth; j++) {
+                    mPyramidWidth[j] = 0;
+                }
+                return;
+            }
+            if (mPyramid[i].length < dstWidth * dstHeight) {
+                mPyramid[i] = new byte[dstWidth * dstHeight];
+            }
+            final byte[] dst = mPyramid[i];
+            for (int y = 0; y < dstHeight; y++) {
+                int input = y * 2 * width;
+                final int output = y * dstWidth;
+                for (int x = 0; x < dstWidth; x++, input += 2) {
+                    final int sum = (src[input] & 0xFF) + (src[input + 1] & 0xFF)
+                            + (src[input + width] & 0xFF) + (src[input + width + 1] & 0xFF);
+                    dst[output + x] = (byte) ((sum + 2) >> 2);
+                }
+            }
+            mPyramidWidth[i] = dstWidth;
+            mPyramidHeight[i] = dstHeight;
+            src = dst;
+            width = dstWidth;
+            height = dstHeight;
+        }
+    }
+
+    /**
+     * 以指定级别解码一次：只解码二维码时直接使用二维码流程，否则按优先级依次尝试各码制。
+     *
+     * 只解码二维码时，二值化复用 MatrixBinarizer 的矩阵和中间数组，反色也不复制亮度。
+     * 每次尝试仍有的分配都在 ZXing 内部：Detector 及其定位图案列表、采样网格的 BitMatrix、
+     * 纠错和解码的结果对象。多码制时一维码读取器需要 BinaryBitmap，仍然每次新建二值化器、
+     * BinaryBitmap 及其缓存的 BitMatrix，反色级别另外分配反色后的亮度数组。
+     * 跟踪窗口和金字塔每次新建一个不复制数据的亮度源包装对象。
+     */
+    private Result decode(LuminanceSource source, int level) throws ReaderException {
+        final Map<DecodeHintType, Object> hints = level >= LEVEL_TRY_HARDER ? mTryHarderHints : mHints;
+        if (mReaders == null) {
+            final long mark = System.nanoTime();
+            final BitMatrix image;
+            try {
+                image = mBinarizer.binarize(source, level != LEVEL_GLOBAL_HISTOGRAM, level == LEVEL_INVERTED);
+            } finally {
+                record(DecodeMetrics.STAGE_BINARIZE, mark);
+            }
+            return decodeQRCode(image, hints);
+        }
+        final LuminanceSource input = level == LEVEL_INVERTED ? source.invert() : source;
+        final Binarizer binarizer = level == LEVEL_GLOBAL_HISTOGRAM
+                ? new GlobalHistogramBinarizer(input) : new HybridBinarizer(input);
+        return decodeFormats(new BinaryBitmap(binarizer), hints);
+    }
+
+    /**
+     * 按各码制的优先级依次尝试，记录每次尝试的结果和耗时用于下一次排序
+     */
+    private Result decodeFormats(BinaryBitmap bitmap, Map<DecodeHintType, Object> hints) throws ReaderException {
+        if (mNeedsMatrix) {
+            // 二值化结果由 BinaryBitmap 缓存，各二维码制共用；一维码只二值化需要扫描的行
+            final long mark = System.nanoTime();
+            try {
+                bitmap.getBlackMatrix();
+            } finally {
+                record(DecodeMetrics.STAGE_BINARIZE, mark);
+            }
+        }
+        FormatReader.sort(mReaders);
+        ReaderException notFound = NotFoundException.getNotFoundInstance();
+        try {
+            for (int i = 0; i < mReaders.length; i++) {
+                if (i > 0 && Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                final FormatReader reader = mReaders[i];
+                final long mark = System.nanoTime();
+                try {
+                    final Result result = reader.decode(bitmap, hints);
+                    reader.onAttempt(true, elapsed(reader, mark));
+                    return result;
+                } catch (ReaderException re) {
+                    reader.onAttempt(false, elapsed(reader, mark));
+                    notFound = re;
+                }
+            }
+        } finally {
+            mScanlines.clear();
+        }
+        throw notFound;
+    }
+
+    /**
+     * @return 本次尝试的耗时。二维码的定位和解码阶段已分别记录，其它码制整体计入解码阶段
+     */
+    private long elapsed(FormatReader reader, long start) {
+        if (reader instanceof QRCodeFormatReader) {
+            return System.nanoTime() - start;
+        }
+        return record(DecodeMetrics.STAGE_DECODE, start) - start;
+    }
+
+    private static boolean isUPCEAN(BarcodeFormat format) {
+        return format == BarcodeFormat.EAN_13 || format == BarcodeFormat.EAN_8
+                || format == BarcodeFormat.UPC_A || format == BarcodeFormat.UPC_E;
+    }
+
+    /**
+     * 与 QRCodeReader 相同的流程，拆分为定位和解码两个阶段分别计时
+     */
+    private Result decodeQRCode(BitMatrix image, Map<DecodeHintType, ?> hints) throws ReaderException {
+        int stage = DecodeMetrics.STAGE_DETECT;
+        long mark = System.nanoTime();
+        try {
+            final DetectorResult detectorResult = new Detector(image).detect(hints);
+            mark = record(stage, mark);
+            stage = DecodeMetrics.STAGE_DECODE;
+            final DecoderResult decoderResult = mQRCodeDecoder.decode(detectorResult.getBits(), hints);
+            mark = record(stage, mark);
+            stage = -1;
+            final ResultPoint[] points = detectorResult.getPoints();
+            if (decoderResult.getOther() instanceof QRCodeDecoderMetaData) {
+                // 镜像的二维码，定位点需要同样镜像
+                ((QRCodeDecoderMetaData) decoderResult.getOther()).applyMirroredCorrection(points);
+            }
+            final Result result = new Result(decoderResult.getText(), decoderResult.getRawBytes(),
+                    points, BarcodeFormat.QR_CODE);
+            if (decoderResult.getByteSegments() != null) {
+                result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, decoderResult.getByteSegments());
+            }
+            if (decoderResult.getECLevel() != null) {
+                result.putMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL, decoderResult.getECLevel());
+            }
+            return result;
+        } finally {
+            if (stage >= 0) {
+                // 失败阶段的耗时同样计入
+                record(stage, mark);
+            }
+        }
+    }
+
+    /**
+     * 多码制时的二维码解码器，使用 BinaryBitmap 缓存的二值化结果
+     */
+    private final class QRCodeFormatReader extends FormatReader {
+
+        @Override
+        Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws ReaderException {
+            return decodeQRCode(image.getBlackMatrix(), hints);
+        }
+    }
+
+    /**
+     * 记录阶段耗时
+     * @param stage 阶段，如 DecodeMetrics.STAGE_BINARIZE
+     * @param start 阶段开始时间，System.nanoTime()
+     * @return 当前时间，用作下一阶段的开始时间
+     */
+    protected long record(int stage, long start) {
+        final long now = System.nanoTime();
+        if (mMetrics != null) {
+            mMetrics.record(stage, now - start);
+        }
+        return now;
+    }
+
+    private void increment(int counter) {
+        if (mMetrics != null) {
+            mMetrics.increment(counter);
+        }
+    }
+
+    /**
+     * 将 ARGB 像素转换为灰度，与 RGBLuminanceSource 相同的公式：(R + 2G + B) / 4
+     */
+    protected static void toLuminances(int[] pixels, int pixelOffset, byte[] luminances, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int pixel = pixels[pixelOffset + i];
+            final int r = (pixel >> 16) & 0xff;
+            final int g2 = (pixel >> 7) & 0x1fe;
+            final int b = pixel & 0xff;
+            luminances[offset + i] = (byte) ((r + g2 + b) >> 2);
+        }
+    }
+
+    /**
+     * 获取亮度工作缓冲区，相同尺寸的图像重复解码时不再分配新的缓冲区
+     * @param size 需要的长度
+     * @return 长度不小于 size 的缓冲区
+     */
+    protected byte[] obtainLuminances(int size) {
+        if (mLuminances.length < size) {
+            mLuminances = new byte[size];
+        }
+        return mLuminances;
+    }
+
+    public static class Builder{
+
+        private String mCharset = "UTF-8";
+        private int mLowestLevel = LEVEL_HYBRID;
+        private int mHighestLevel = LEVEL_HYBRID;
+        private boolean mAdaptive = true;
+        private int mProbeAfter = 8;
+        private int mResetAfter = 4;
+        private int mPyramidLevels = 1;
+        private boolean mTracking = false;
+        private DecodeMetrics mMetrics;
+        private Set<BarcodeFormat> mFormats = EnumSet.of(BarcodeFormat.QR_CODE);
+
+        /**
+         * 设置文本编码格式
+         * @param charset 字符编码格式
+         * @return Builder，用于链式调用
+         */
+        public Builder setCharset(String charset) {
+            if (charset == null || charset.length() == 0){
+                throw new IllegalArgumentException("Illegal charset: " + charset);
+            }
+            mCharset = charset;
+            return this;
+        }
+
+        /**
+         * 设置解码级别范围。每一帧从起始级别开始逐级尝试，直到解码成功或达到最高级别。
+         * 默认只使用 LEVEL_HYBRID，与旧版本行为一致。
+         * 范围包括 LEVEL_INVERTED 且最低级别低于它时，反色只在原图的正常级别都失败后尝试，
+         * 反色解码成功不会让下一帧跳过正常级别。
+         * @param lowest 最低级别，如 LEVEL_GLOBAL_HISTOGRAM
+         * @param highest 最高级别，如 LEVEL_INVERTED
+         * @return Builder，用于链式调用
+         */
+        public Builder setEscalation(int lowest, int highest) {
+            if (lowest < LEVEL_GLOBAL_HISTOGRAM || highest > LEVEL_INVERTED || lowest > highest) {
+                throw new IllegalArgumentException("Illegal escalation levels: " + lowest + " ~ " + highest);
+            }
+            mLowestLevel = lowest;
+            mHighestLevel = highest;
+            return this;
+        }
+
+        /**
+         * 设置是否根据最近的解码结果调整起始级别。启用后，需要高级别才能解码的场景会直接从该级别开始，
+         * 连续成功后再尝试更低的级别，连续失败则回到最低级别。默认启用。
+         * @param adaptive 是否自适应
+         * @return Builder，用于链式调用
+         */
+        public Builder setAdaptiveEscalation(boolean adaptive) {
+            mAdaptive = adaptive;
+            return this;
+        }
+
+        /**
+         * 设置自适应调整的参数
+         * @param probeAfter 在起始级别连续成功多少次后尝试降低一级，默认8
+         * @param resetAfter 连续失败多少次后回到最低级别，默认4
+         * @return Builder，用于链式调用
+         */
+        public Builder setAdaptiveEscalation(int probeAfter, int resetAfter) {
+            if (probeAfter < 1 || resetAfter < 1) {
+                throw new IllegalArgumentException("Illegal adaptive parameters: " + probeAfter + ", " + resetAfter);
+            }
+            mProbeAfter = probeAfter;
+            mResetAfter = resetAfter;
+            return this;
+        }
+
+        /**
+         * 设置金字塔层数。大于1时，先以长宽缩小为 1/2 或 1/4 的图像尝试解码，失败后才使用原图，
+         * 并记住最近成功的层级。适合近距离、占画面比例较大的二维码。默认为1，即只使用原图。
+         * @param levels 层数：1 只使用原图；2 先尝试 1/2；3 先尝试 1/4
+         * @return Builder，用于链式调用
+         */
+        public Builder setPyramidLevels(int levels) {
+            if (levels < 1 || levels > MAX_PYRAMID_LEVELS) {
+                throw new IllegalArgumentException("Pyramid levels must be 1 ~ " + MAX_PYRAMID_LEVELS + ": " + levels);
+            }
+            mPyramidLevels = levels;
+            return this;
+        }
+
+        /**
+         * 设置解码阶段耗时的记录对象，同一个 Builder 创建的解码器共用
+         * @param metrics 记录对象，为null时不记录
+         * @return Builder，用于链式调用
+         */
+        public Builder setMetrics(DecodeMetrics metrics) {
+            mMetrics = metrics;
+            return this;
+        }
+
+        /**
+         * 设置是否跟踪上一次解码的二维码。启用后记住定位点的位置，下一帧先在其附近的窗口中以起始级别解码，
+         * 窗口之外的像素不参与二值化和定位，解码代价与二维码大小而不是画面大小相关；跟踪丢失时再搜索整帧。
+         * 适合连续扫描位置基本不变的二维码。默认不启用。
+         * @param tracking 是否跟踪
+         * @return Builder，用于链式调用
+         */
+        public Builder setTracking(boolean tracking) {
+            mTracking = tracking;
+            return this;
+        }
+
+        /**
+         * 设置需要解码的码制。启用多种码制时，每次按最近的命中率与平均解码耗时之比从高到低尝试，
+         * 画面中常见的、解码快的码制优先；二维码制共用一次二值化，一维码只扫描中间附近的几行（TRY_HARDER 时更多），
+         * 不会为了一维码二值化整幅图像。默认只解码二维码。
+         * @param formats 码制，不支持 MAXICODE 和 UPC_EAN_EXTENSION
+         * @return Builder，用于链式调用
+         */
+        public Builder setFormats(BarcodeFormat... formats) {
+            if (formats == null || formats.length == 0) {
+                throw new IllegalArgumentException("Formats must not be empty");
+            }
+            final Set<BarcodeFormat> set = EnumSet.noneOf(BarcodeFormat.class);
+            for (BarcodeFormat format : formats) {
+                if (format == null || format == BarcodeFormat.MAXICODE || format == BarcodeFormat.UPC_EAN_EXTENSION) {
+                    throw new IllegalArgumentException("Unsupported format: " + format);
+                }
+                set.add(format);
+            }
+            mFormats = set;
+            return this;
+        }
+
+        public LuminanceDecoder build(){
+            return new LuminanceDecoder(this);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 复用输出矩阵和中间数组的二值化，算法与 GlobalHistogramBinarizer、HybridBinarizer 相同，结果逐位一致。
+ * ZXing 的二值化器与亮度源绑定，每次解码都要新建二值化器和 BitMatrix；尺寸不变时这里只清空上一次的矩阵。
+ * 反色在读取像素时完成，不需要 InvertedLuminanceSource 复制整幅亮度。
+ * 返回的矩阵在下一次调用前有效，同一个实例不能在多个线程中同时使用。
+ */
+final class MatrixBinarizer {
+
+    private static final int LUMINANCE_BITS = 5;
+    private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
+    private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
+
+    private static final int BLOCK_SIZE_POWER = 3;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER;
+    private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
+    private static final int MIN_DYNAMIC_RANGE = 24;
+
+    private final int[] mBuckets = new int[LUMINANCE_BUCKETS];
+    private int[] mBlackPoints = new int[0];
+    private BitMatrix mMatrix;
+
+    /**
+     * @param source 亮度源，getMatrix() 不应每次复制，如尺寸与数据一致的 YUVLuminanceSource
+     * @param hybrid 是否使用 HybridBinarizer 的分块阈值，否则使用 GlobalHistogramBinarizer 的全局阈值
+     * @param inverted 是否反色
+     * @return 二值化结果，在下一次调用前有效
+     * @throws NotFoundException 全局直方图没有明显的两个峰值
+     */
+    BitMatrix binarize(LuminanceSource source, boolean hybrid, boolean inverted) throws NotFoundException {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] luminances = source.getMatrix();
+        final int mask = inverted ? 0xFF : 0;
+        final BitMatrix matrix = obtainMatrix(width, height);
+        if (hybrid && width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION) {
+            final int subWidth = (width + BLOCK_SIZE - 1) >> BLOCK_SIZE_POWER;
+            final int subHeight = (height + BLOCK_SIZE - 1) >> BLOCK_SIZE_POWER;
+            if (mBlackPoints.length < subWidth * subHeight) {
+                mBlackPoints = new int[subWidth * subHeight];
+            }
+            calculateBlackPoints(luminances, mask, subWidth, subHeight, width, height);
+            calculateThresholdForBlock(luminances, mask, subWidth, subHeight, width, height, matrix);
+        } else {
+            globalHistogram(luminances, mask, width, height, matrix);
+        }
+        return matrix;
+    }
+
+    private BitMatrix obtainMatrix(int width, int height) {
+        if (mMatrix == null || mMatrix.getWidth() != width || mMatrix.getHeight() != height) {
+            mMatrix = new BitMatrix(width, height);
+        } else {
+            mMatrix.clear();
+        }
+        return mMatrix;
+    }
+
+    private void globalHistogram(byte[] luminances, int mask, int width, int height, BitMatrix matrix)
+            throws NotFoundException {
+        final int[] buckets = mBuckets;
+        for (int i = 0; i < LUMINANCE_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        // 与 GlobalHistogramBinarizer 相同，只统计中间五分之三宽度内的四行
+        final int right = (width * 4) / 5;
+        for (int y = 1; y < 5; y++) {
+            final int offset = (height * y / 5) * width;
+            for (int x = width / 5; x < right; x++) {
+                buckets[((luminances[offset + x] & 0xFF) ^ mask) >> LUMINANCE_SHIFT]++;
+            }
+        }
+        final int blackPoint = estimateBlackPoint(buckets);
+        for (int y = 0; y < height; y++) {
+            final int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if (((luminances[offset + x] & 0xFF) ^ mask) < blackPoint) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+    }
+
+    private static int estimateBlackPoint(int[] buckets) throws NotFoundException {
+        final int numBuckets = buckets.length;
+        int maxBucketCount = 0;
+        int firstPeak = 0;
+        int firstPeakSize = 0;
+        for (int x = 0; x < numBuckets; x++) {
+            if (buckets[x] > firstPeakSize) {
+                firstPeak = x;
+                firstPeakSize = buckets[x];
+            }
+            if (buckets[x] > maxBucketCount) {
+                maxBucketCount = buckets[x];
+            }
+        }
+        int secondPeak = 0;
+        int secondPeakScore = 0;
+        for (int x = 0; x < numBuckets; x++) {
+            final int distanceToBiggest = x - firstPeak;
+            final int score = buckets[x] * distanceToBiggest * distanceToBiggest;
+            if (score > secondPeakScore) {
+                secondPeak = x;
+                secondPeakScore = score;
+            }
+        }
+        if (firstPeak > secondPeak) {
+            final int temp = firstPeak;
+            firstPeak = secondPeak;
+            secondPeak = temp;
+        }
+        if (secondPeak - firstPeak <= numBuckets / 16) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        int bestValley = secondPeak - 1;
+        int bestValleyScore = -1;
+        for (int x = secondPeak - 1; x > firstPeak; x--) {
+            final int fromFirst = x - firstPeak;
+            final int score = fromFirst * fromFirst * (secondPeak - x) * (maxBucketCount - buckets[x]);
+            if (score > bestValleyScore) {
+                bestValley = x;
+                bestValleyScore = score;
+            }
+        }
+        return bestValley << LUMINANCE_SHIFT;
+    }
+
+    /**
+     * 每个 8x8 块的阈值：块内平均亮度；块内亮度变化过小时参考已计算的相邻块
+     */
+    private void calculateBlackPoints(byte[] luminances, int mask, int subWidth, int subHeight,
+                                      int width, int height) {
+        final int[] blackPoints = mBlackPoints;
+        for (int y = 0; y < subHeight; y++) {
+            final int yoffset = Math.min(y << BLOCK_SIZE_POWER, height - BLOCK_SIZE);
+            for (int x = 0; x < subWidth; x++) {
+                final int xoffset = Math.min(x << BLOCK_SIZE_POWER, width - BLOCK_SIZE);
+                int sum = 0;
+                int min = 0xFF;
+                int max = 0;
+                for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width) {
+                    for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+                        final int pixel = (luminances[offset + xx] & 0xFF) ^ mask;
+                        sum += pixel;
+                        if (pixel < min) {
+                            min = pixel;
+                        }
+                        if (pixel > max) {
+                            max = pixel;
+                        }
+                    }
+                    if (max - min > MIN_DYNAMIC_RANGE) {
+                        // 变化已足够大，剩余的行只求和
+                        for (yy++, offset += width; yy < BLOCK_SIZE; yy++, offset += width) {
+                            for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+                                sum += (luminances[offset + xx] & 0xFF) ^ mask;
+                            }
+                        }
+                    }
+                }
+                int average = sum >> (BLOCK_SIZE_POWER * 2);
+                if (max - min <= MIN_DYNAMIC_RANGE) {
+                    average = min / 2;
+                    if (y > 0 && x > 0) {
+                        final int averageNeighborBlackPoint = (blackPoints[(y - 1) * subWidth + x]
+                                + 2 * blackPoints[y * subWidth + x - 1]
+                                + blackPoints[(y - 1) * subWidth + x - 1]) / 4;
+                        if (min < averageNeighborBlackPoint) {
+                            average = averageNeighborBlackPoint;
+                        }
+                    }
+                }
+                blackPoints[y * subWidth + x] = average;
+            }
+        }
+    }
+
+    /**
+     * 以周围 5x5 个块阈值的平均值二值化每个块
+     */
+    private void calculateThresholdForBlock(byte[] luminances, int mask, int subWidth, int subHeight,
+                                            int width, int height, BitMatrix matrix) {
+        final int[] blackPoints = mBlackPoints;
+        for (int y = 0; y < subHeight; y++) {
+            final int yoffset = Math.min(y << BLOCK_SIZE_POWER, height - BLOCK_SIZE);
+            final int top = cap(y, 2, subHeight - 3);
+            for (int x = 0; x < subWidth; x++) {
+                final int xoffset = Math.min(x << BLOCK_SIZE_POWER, width - BLOCK_SIZE);
+                final int left = cap(x, 2, subWidth - 3);
+                int sum = 0;
+                for (int z = -2; z <= 2; z++) {
+                    final int row = (top + z) * subWidth + left;
+                    sum += blackPoints[row - 2] + blackPoints[row - 1] + blackPoints[row]
+                            + blackPoints[row + 1] + blackPoints[row + 2];
+                }
+                final int threshold = sum / 25;
+                for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width) {
+                    for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+                        if (((luminances[offset + xx] & 0xFF) ^ mask) <= threshold) {
+                            matrix.set(xoffset + xx, yoffset + yy);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cap(int value, int min, int max) {
+        return value < min ? min : value > max ? max : value;
+    }
+}
@@ -0,0 +1,408 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.github.yoojia.zxing.writer.MatrixWriter;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 将文本信息生成二维码矩阵，不依赖 Android 平台。生成参数在 build() 时确定。
+ */
+public class MatrixEncoder {
+
+    private static final Logger LOGGER = Logger.getLogger(MatrixEncoder.class.getName());
+
+    private final int mBackgroundColor;
+    private final int mCodeColor;
+    private final String mCharset;
+    private final int mOutputWidth;
+    private final int mOutputHeight;
+    private final int mHintMargin;
+    private final int mBatchWindow;
+    private final boolean mBatchOrdered;
+    private final MultiFormatWriter mMultiFormatWriter;
+
+    protected MatrixEncoder(Builder builder) {
+        mBackgroundColor = builder.mBackgroundColor;
+        mCodeColor = builder.mCodeColor;
+        mCharset = builder.mCharset;
+        mOutputWidth = builder.mOutputBitmapWidth;
+        mOutputHeight = builder.mOutputBitmapHeight;
+        mHintMargin = builder.mHintMargin;
+        mBatchWindow = builder.mBatchWindow;
+        mBatchOrdered = builder.mBatchOrdered;
+        mMultiFormatWriter = new MultiFormatWriter();
+    }
+
+    /**
+     * 将文本信息生成二维码矩阵
+     * @param content 文本内容
+     * @param width 输出宽度
+     * @param height 输出高度
+     * @return 二维码矩阵，如果生成失败，返回null。
+     */
+    public BitMatrix encodeMatrix(final String content, int width, int height){
+        checkContent(content);
+        return encodeMatrix(mMultiFormatWriter, content, width, height);
+    }
+
+    /**
+     * 将文本信息生成二维码，不经过图片直接写入输出流，输出尺寸为 Builder 中设置的宽度和高度
+     * @param content 文本内容
+     * @param writer 输出格式，如 PNGWriter
+     * @param out 输出流，写入后不关闭
+     * @return 是否生成成功
+     * @throws IOException 写入失败
+     */
+    public boolean encode(final String content, MatrixWriter writer, OutputStream out) throws IOException {
+        final BitMatrix result = encodeMatrix(content, mOutputWidth, mOutputHeight);
+        if (result == null) {
+            return false;
+        }
+        writer.write(result, mCodeColor, mBackgroundColor, out);
+        return true;
+    }
+
+    /**
+     * 将文本信息生成二维码，不经过图片直接写入通道
+     * @param content 文本内容
+     * @param writer 输出格式，如 PNGWriter
+     * @param channel 输出通道，必须为阻塞模式，写入后不关闭
+     * @return 是否生成成功
+     * @throws IOException 写入失败
+     */
+    public boolean encode(final String content, MatrixWriter writer, WritableByteChannel channel) throws IOException {
+        return encode(content, writer, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 批量生成二维码，输出尺寸为 Builder 中设置的宽度和高度。
+     * 在调用线程中依次读取文本内容并提交到 executor 并发生成，每个执行线程使用独立的生成器和绘制缓冲区；
+     * 已提交但尚未回调的数量不超过 Builder 设置的批量窗口，以此限制同时占用的内存。所有结果回调完成后返回。
+     * @param contents 文本内容
+     * @param executor 执行生成任务的线程池，并发度由线程池决定
+     * @param output 将二维码矩阵转换为输出结果，在执行线程中调用
+     * @param listener 结果回调，在执行线程中调用，同一批次的回调不会并发执行
+     * @throws InterruptedException 等待过程中调用线程被中断，此后不再提交和回调
+     */
+    public <T> void encodeAll(Iterator<String> contents, Executor executor,
+                              Output<T> output, OnBatchEncodeListener<T> listener) throws InterruptedException {
+        if (executor == null || output == null || listener == null) {
+            throw new IllegalArgumentException("Executor, output and listener CANNOT be null");
+        }
+        new Batch<>(executor, output, listener).run(contents);
+    }
+
+    /**
+     * 批量生成二维码
+     * @see #encodeAll(Iterator, Executor, Output, OnBatchEncodeListener)
+     */
+    public <T> void encodeAll(Iterable<String> contents, Executor executor,
+                              Output<T> output, OnBatchEncodeListener<T> listener) throws InterruptedException {
+        encodeAll(contents.iterator(), executor, output, listener);
+    }
+
+    public int getCodeColor() {
+        return mCodeColor;
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public int getOutputWidth() {
+        return mOutputWidth;
+    }
+
+    public int getOutputHeight() {
+        return mOutputHeight;
+    }
+
+    private BitMatrix encodeMatrix(MultiFormatWriter writer, String content, int width, int height){
+        final Map<EncodeHintType,Object> hints = new EnumMap<>(EncodeHintType.class);
+        // 字符编码
+        hints.put(EncodeHintType.CHARACTER_SET, mCharset);
+        if (mHintMargin >= 0){
+            // 输出图片外边距
+            hints.put(EncodeHintType.MARGIN, mHintMargin);
+        }
+        try {
+            return writer.encode(content, BarcodeFormat.QR_CODE, width, height, hints);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "QRCode encode failed", e);
+            return null;
+        }
+    }
+
+    protected static void checkContent(String content) {
+        if (content == null || content.length() == 0){
+            throw new IllegalArgumentException("QRCode encode content CANNOT be empty");
+        }
+    }
+
+    /**
+     * 一次批量生成。
+     * 按输入顺序回调时，已完成的结果暂存在以序号取模的环形槽位中，直到前面的结果都已回调；
+     * 未回调的序号不会超过窗口大小，所以槽位不会冲突。
+     */
+    private final class Batch<T> {
+
+        private final Executor mExecutor;
+        private final Output<T> mOutput;
+        private final OnBatchEncodeListener<T> mListener;
+        private final Semaphore mPermits;
+        // 空闲的生成器和缓冲区，数量不超过同时执行的线程数
+        private final Queue<Worker> mIdleWorkers = new ConcurrentLinkedQueue<>();
+
+        private final String[] mContents;
+        private final Object[] mResults;
+        private final boolean[] mCompleted;
+        private int mNextDelivery;
+        private volatile boolean mCanceled;
+
+        Batch(Executor executor, Output<T> output, OnBatchEncodeListener<T> listener) {
+            mExecutor = executor;
+            mOutput = output;
+            mListener = listener;
+            mPermits = new Semaphore(mBatchWindow);
+            mContents = mBatchOrdered ? new String[mBatchWindow] : null;
+            mResults = mBatchOrdered ? new Object[mBatchWindow] : null;
+            mCompleted = mBatchOrdered ? new boolean[mBatchWindow] : null;
+        }
+
+        void run(Iterator<String> contents) throws InterruptedException {
+            int index = 0;
+            try {
+                while (contents.hasNext()) {
+                    final String content = contents.next();
+                    mPermits.acquire();
+                    final int taskIndex = index++;
+                    try {
+                        mExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                onCompleted(taskIndex, content, encode(content));
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        mCanceled = true;
+                        throw e;
+                    }
+                }
+                // 取得全部许可，即所有结果都已回调
+                mPermits.acquire(mBatchWindow);
+                mPermits.release(mBatchWindow);
+            } catch (InterruptedException e) {
+                mCanceled = true;
+                throw e;
+            }
+        }
+
+        private T encode(String content) {
+            if (mCanceled || content == null || content.length() == 0) {
+                return null;
+            }
+            Worker worker = mIdleWorkers.poll();
+            if (worker == null) {
+                worker = new Worker();
+            }
+            try {
+                final BitMatrix result = encodeMatrix(worker.writer, content, mOutputWidth, mOutputHeight);
+                return result == null ? null : mOutput.create(result, worker.renderer);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Batch encode failed", e);
+                return null;
+            } finally {
+                mIdleWorkers.offer(worker);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized void onCompleted(int index, String content, T result) {
+            if (!mBatchOrdered) {
+                deliver(index, content, result);
+                mPermits.release();
+                return;
+            }
+            final int slot = index % mBatchWindow;
+            mContents[slot] = content;
+            mResults[slot] = result;
+            mCompleted[slot] = true;
+            int next = mNextDelivery % mBatchWindow;
+            while (mCompleted[next]) {
+                deliver(mNextDelivery, mContents[next], (T) mResults[next]);
+                mContents[next] = null;
+                mResults[next] = null;
+                mCompleted[next] = false;
+                mNextDelivery++;
+                mPermits.release();
+                next = mNextDelivery % mBatchWindow;
+            }
+        }
+
+        private void deliver(int index, String content, T result) {
+            if (mCanceled) {
+                return;
+            }
+            try {
+                mListener.onEncoded(index, content, result);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Batch listener failed", e);
+            }
+        }
+    }
+
+    private final class Worker {
+
+        final MultiFormatWriter writer = new MultiFormatWriter();
+        final RasterRenderer renderer = new RasterRenderer(mCodeColor, mBackgroundColor);
+    }
+
+    /**
+     * 批量生成时将二维码矩阵转换为输出结果
+     */
+    public interface Output<T> {
+
+        /**
+         * @param matrix 二维码矩阵
+         * @param renderer 当前执行线程独占的绘制器，颜色为 Builder 中设置的颜色
+         * @return 输出结果
+         */
+        T create(BitMatrix matrix, RasterRenderer renderer);
+    }
+
+    /**
+     * 批量生成结果回调
+     */
+    public interface OnBatchEncodeListener<T> {
+
+        /**
+         * @param index 文本内容在输入中的序号
+         * @param content 文本内容
+         * @param result 生成结果，如果生成失败，为null
+         */
+        void onEncoded(int index, String content, T result);
+    }
+
+    public static class Builder{
+
+        private int mBackgroundColor = 0xFFFFFFFF;
+        private int mCodeColor = 0xFF000000;
+        private String mCharset = "UTF-8";
+        private int mOutputBitmapWidth;
+        private int mOutputBitmapHeight;
+        private int mHintMargin = -1;
+        private int mBatchWindow = Runtime.getRuntime().availableProcessors() * 2;
+        private boolean mBatchOrdered = true;
+
+        /**
+         * 设置生成二维码图片的背景色
+         * @param backgroundColor 背景色，如 0xFFFFFFFF
+         * @return Builder，用于链式调用
+         */
+        public Builder setBackgroundColor(int backgroundColor) {
+            mBackgroundColor = backgroundColor;
+            return this;
+        }
+
+        /**
+         * 设置二维码的编码块颜色
+         * @param codeColor 编码块颜色，如 0xFF000000
+         * @return Builder，用于链式调用
+         */
+        public Builder setCodeColor(int codeColor) {
+            mCodeColor = codeColor;
+            return this;
+        }
+
+        /**
+         * 设置文本编码格式
+         * @param charset 字符编码格式
+         * @return Builder，用于链式调用
+         */
+        public Builder setCharset(String charset) {
+            if (charset == null || charset.length() == 0){
+                throw new IllegalArgumentException("Illegal charset: " + charset);
+            }
+            mCharset = charset;
+            return this;
+        }
+
+        /**
+         * 设置输出图片的宽度
+         * @param outputBitmapWidth 宽度，单位：px
+         * @return Builder，用于链式调用
+         */
+        public Builder setOutputBitmapWidth(int outputBitmapWidth) {
+            mOutputBitmapWidth = outputBitmapWidth;
+            return this;
+        }
+
+        /**
+         * 设置输出图片的高度
+         * @param outputBitmapHeight 高度，单位：px
+         * @return Builder，用于链式调用
+         */
+        public Builder setOutputBitmapHeight(int outputBitmapHeight) {
+            mOutputBitmapHeight = outputBitmapHeight;
+            return this;
+        }
+
+        /**
+         * 设置输出二维码与图片边缘的距离
+         * @param hintMargin 距离值，正整数。
+         */
+        public Builder setOutputBitmapPadding(int hintMargin) {
+            mHintMargin = hintMargin;
+            return this;
+        }
+
+        /**
+         * 设置批量生成时已提交但尚未回调的最大数量，同时占用内存的结果不超过这个数量
+         * @param window 数量，默认为处理器核数的两倍
+         * @return Builder，用于链式调用
+         */
+        public Builder setBatchWindow(int window) {
+            if (window < 1) {
+                throw new IllegalArgumentException("Batch window must be positive: " + window);
+            }
+            mBatchWindow = window;
+            return this;
+        }
+
+        /**
+         * 设置批量生成的回调顺序
+         * @param ordered 为true时按输入顺序回调（默认），为false时按完成顺序回调
+         * @return Builder，用于链式调用
+         */
+        public Builder setBatchOrdered(boolean ordered) {
+            mBatchOrdered = ordered;
+            return this;
+        }
+
+        /**
+         * @return 二维码生成器对象
+         */
+        public MatrixEncoder build(){
+            return new MatrixEncoder(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 预览帧变化检测。在解码区域内均匀抽取 32x32 个点（每点取 2x2 像素均值以抑制噪点）作为亮度签名，
+ * 与前一帧的签名比较平均差值。抽样点间距与二维码模块尺寸相近，画面平移半个模块以上即可体现在签名中：
+ * 差值过大说明相机仍在移动，画面模糊且很快会变化，推迟到画面稳定后再解码；
+ * 与最近一次解码失败的帧相比几乎没有变化时，再次解码的结果必然相同，直接跳过。
+ * 连续推迟或跳过的帧数有上限，达到上限后强制解码一帧，避免持续晃动或缓慢变化时一直不解码。
+ *
+ * 多个解码线程共用时，解码结果对应最近一次判定为 RESULT_CHANGED 的帧。
+ */
+public class MotionDetector {
+
+    /**
+     * 画面已变化，应解码
+     */
+    public static final int RESULT_CHANGED = 0;
+    /**
+     * 与最近一次解码失败的帧相同，跳过
+     */
+    public static final int RESULT_UNCHANGED = 1;
+    /**
+     * 与前一帧相比变化过大，推迟到画面稳定后解码
+     */
+    public static final int RESULT_MOVING = 2;
+
+    // 签名每个方向的抽样点数
+    private static final int GRID = 32;
+
+    private final int mStillThreshold;
+    private final int mMotionThreshold;
+    private final int mMaxDeferred;
+    private final int mMaxSkipped;
+
+    private final int[] mCurrent = new int[GRID * GRID];
+    private final int[] mPrevious = new int[GRID * GRID];
+    private final int[] mCandidate = new int[GRID * GRID];
+    private final int[] mFailed = new int[GRID * GRID];
+    private boolean mHasPrevious;
+    private boolean mHasCandidate;
+    private boolean mHasFailed;
+    private int mDeferred;
+    private int mSkipped;
+
+    private MotionDetector(Builder builder) {
+        mStillThreshold = builder.mStillThreshold;
+        mMotionThreshold = builder.mMotionThreshold;
+        mMaxDeferred = builder.mMaxDeferred;
+        mMaxSkipped = builder.mMaxSkipped;
+    }
+
+    /**
+     * 判断预览帧是否需要解码
+     * @param source 亮度源。YUVLuminanceSource 直接读取裁剪区域的Y分量，其它亮度源读取 getMatrix()
+     * @return RESULT_CHANGED, RESULT_UNCHANGED 或 RESULT_MOVING
+     */
+    public int check(LuminanceSource source) {
+        if (source instanceof YUVLuminanceSource) {
+            return ((YUVLuminanceSource) source).checkMotion(this);
+        }
+        return check(source.getMatrix(), source.getWidth(), 0, 0, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * 判断亮度数据中指定区域是否需要解码。旋转不影响结果，因此可以直接使用未旋转的预览帧坐标。
+     * @param luminances 亮度数据，按行排列
+     * @param dataWidth 亮度数据宽度
+     * @param left 区域左边界
+     * @param top 区域上边界
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return RESULT_CHANGED, RESULT_UNCHANGED 或 RESULT_MOVING
+     */
+    public synchronized int check(byte[] luminances, int dataWidth, int left, int top, int width, int height) {
+        if (width < 2 || height < 2) {
+            return RESULT_CHANGED;
+        }
+        sign(luminances, dataWidth, left, top, width, height, mCurrent);
+        final boolean hadPrevious = mHasPrevious;
+        final int motion = hadPrevious ? distance(mCurrent, mPrevious) : 0;
+        System.arraycopy(mCurrent, 0, mPrevious, 0, mCurrent.length);
+        mHasPrevious = true;
+        if (hadPrevious && motion >= mMotionThreshold && mDeferred < mMaxDeferred) {
+            mDeferred++;
+            return RESULT_MOVING;
+        }
+        mDeferred = 0;
+        if (mHasFailed && distance(mCurrent, mFailed) <= mStillThreshold && mSkipped < mMaxSkipped) {
+            mSkipped++;
+            return RESULT_UNCHANGED;
+        }
+        mSkipped = 0;
+        System.arraycopy(mCurrent, 0, mCandidate, 0, mCurrent.length);
+        mHasCandidate = true;
+        return RESULT_CHANGED;
+    }
+
+    /**
+     * 最近一次判定为 RESULT_CHANGED 的帧解码失败，画面不变时之后的帧将被跳过
+     */
+    public synchronized void onDecodeFailed() {
+        if (mHasCandidate) {
+            System.arraycopy(mCandidate, 0, mFailed, 0, mCandidate.length);
+            mHasFailed = true;
+        }
+    }
+
+    /**
+     * 最近一次判定为 RESULT_CHANGED 的帧解码成功，画面不变时仍继续解码
+     */
+    public synchronized void onDecoded() {
+        mHasFailed = false;
+    }
+
+    /**
+     * 清除所有记录，如相机重新启动后
+     */
+    public synchronized void reset() {
+        mHasPrevious = false;
+        mHasCandidate = false;
+        mHasFailed = false;
+        mDeferred = 0;
+        mSkipped = 0;
+    }
+
+    /**
+     * 计算亮度签名：每个抽样点取以抽样间隔中心为左上角的 2x2 像素均值
+     */
+    private static void sign(byte[] luminances, int dataWidth, int left, int top, int width, int height, int[] signature) {
+        for (int sy = 0; sy < GRID; sy++) {
+            final int y = top + Math.min((sy * 2 + 1) * height / (GRID * 2), height - 2);
+            final int row = y * dataWidth + left;
+            for (int sx = 0; sx < GRID; sx++) {
+                final int index = row + Math.min((sx * 2 + 1) * width / (GRID * 2), width - 2);
+                signature[sy * GRID + sx] = ((luminances[index] & 0xFF) + (luminances[index + 1] & 0xFF)
+                        + (luminances[index + dataWidth] & 0xFF) + (luminances[index + dataWidth + 1] & 0xFF) + 2) >> 2;
+            }
+        }
+    }
+
+    /**
+     * @return 两个签名的平均亮度差，0~255
+     */
+    private static int distance(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return sum / a.length;
+    }
+
+    public static class Builder {
+
+        private int mStillThreshold = 8;
+        private int mMotionThreshold = 16;
+        private int mMaxDeferred = 5;
+        private int mMaxSkipped = 15;
+
+        /**
+         * 设置“画面没有变化”的阈值，与解码失败的帧的平均亮度差不超过此值时跳过
+         * @param threshold 0~255，默认8，应高于相机噪点造成的差值
+         * @return Builder，用于链式调用
+         */
+        public Builder setStillThreshold(int threshold) {
+            if (threshold < 0 || threshold > 255) {
+                throw new IllegalArgumentException("Illegal still threshold: " + threshold);
+            }
+            mStillThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * 设置“相机正在移动”的阈值，与前一帧的平均亮度差不小于此值时推迟解码
+         * @param threshold 1~255，默认16
+         * @return Builder，用于链式调用
+         */
+        public Builder setMotionThreshold(int threshold) {
+            if (threshold < 1 || threshold > 255) {
+                throw new IllegalArgumentException("Illegal motion threshold: " + threshold);
+            }
+            mMotionThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * 设置最多连续推迟和跳过的帧数，达到后强制解码一帧
+         * @param deferred 最多连续推迟的帧数，默认5，为0时不推迟
+         * @param skipped 最多连续跳过的帧数，默认15，为0时不跳过
+         * @return Builder，用于链式调用
+         */
+        public Builder setMaxSkipped(int deferred, int skipped) {
+            if (deferred < 0 || skipped < 0) {
+                throw new IllegalArgumentException("Illegal skip limits: " + deferred + ", " + skipped);
+            }
+            mMaxDeferred = deferred;
+            mMaxSkipped = skipped;
+            return this;
+        }
+
+        public MotionDetector build() {
+            return new MotionDetector(this);
+        }
+    }
+}
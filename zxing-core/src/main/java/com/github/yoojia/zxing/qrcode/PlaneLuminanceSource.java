@@ -0,0 +1,224 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 直接读取Y平面 ByteBuffer 的亮度源，如 Camera2 ImageReader 输出的 YUV_420_888 帧。
+ * 行间距(rowStride)和像素间距(pixelStride)由平面给出，行尾可能有填充，像素之间可能间隔其它分量。
+ * 读取时按间距取样，不需要先把整个平面复制为连续的 byte[]；裁剪和旋转与 YUVLuminanceSource 相同。
+ */
+public final class PlaneLuminanceSource extends LuminanceSource {
+
+    private final ByteBuffer mPlane;
+    private final int mRowStride;
+    private final int mPixelStride;
+    private final int mDataWidth;
+    private final int mDataHeight;
+    private final int mLeft;
+    private final int mTop;
+    private final int mCropWidth;
+    private final int mCropHeight;
+    private final int mRotation;
+
+    /**
+     * @param plane Y平面，以绝对索引读取，索引0为第一个像素，不改变 position
+     * @param rowStride 相邻两行首像素之间的字节数
+     * @param pixelStride 同一行相邻两个像素之间的字节数
+     * @param dataWidth 帧宽度
+     * @param dataHeight 帧高度
+     * @param left 裁剪区域左边界，帧坐标
+     * @param top 裁剪区域上边界，帧坐标
+     * @param cropWidth 裁剪区域宽度，帧坐标
+     * @param cropHeight 裁剪区域高度，帧坐标
+     * @param rotation 裁剪后顺时针旋转角度，只支持 0, 90, 180, 270
+     */
+    public PlaneLuminanceSource(ByteBuffer plane, int rowStride, int pixelStride, int dataWidth, int dataHeight,
+                                int left, int top, int cropWidth, int cropHeight, int rotation) {
+        super(isPortrait(rotation) ? cropHeight : cropWidth, isPortrait(rotation) ? cropWidth : cropHeight);
+        if (left < 0 || top < 0 || left + cropWidth > dataWidth || top + cropHeight > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        if (pixelStride < 1 || rowStride < (dataWidth - 1) * pixelStride + 1) {
+            throw new IllegalArgumentException("Illegal strides: row " + rowStride + ", pixel " + pixelStride);
+        }
+        // 最后一行可能没有行尾填充
+        if (plane.limit() < (long) (dataHeight - 1) * rowStride + (long) (dataWidth - 1) * pixelStride + 1) {
+            throw new IllegalArgumentException("Plane too short for " + dataWidth + "x" + dataHeight);
+        }
+        mPlane = plane;
+        mRowStride = rowStride;
+        mPixelStride = pixelStride;
+        mDataWidth = dataWidth;
+        mDataHeight = dataHeight;
+        mLeft = left;
+        mTop = top;
+        mCropWidth = cropWidth;
+        mCropHeight = cropHeight;
+        mRotation = rotation;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        final int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        final ByteBuffer plane = mPlane;
+        switch (mRotation) {
+            case 0:
+                readRow(mTop + y, row, 0);
+                break;
+            case 90: {
+                // 输出行 y 对应源图第 y 列，自下而上读取
+                int index = (mTop + mCropHeight - 1) * mRowStride + (mLeft + y) * mPixelStride;
+                for (int x = 0; x < width; x++, index -= mRowStride) {
+                    row[x] = plane.get(index);
+                }
+                break;
+            }
+            case 180: {
+                readRow(mTop + mCropHeight - 1 - y, row, 0);
+                for (int i = 0, j = width - 1; i < j; i++, j--) {
+                    final byte temp = row[i];
+                    row[i] = row[j];
+                    row[j] = temp;
+                }
+                break;
+            }
+            default: {
+                // 270: 输出行 y 对应源图倒数第 y 列，自上而下读取
+                int index = mTop * mRowStride + (mLeft + mCropWidth - 1 - y) * mPixelStride;
+                for (int x = 0; x < width; x++, index += mRowStride) {
+                    row[x] = plane.get(index);
+                }
+                break;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        return copyMatrix(new byte[getWidth() * getHeight()]);
+    }
+
+    /**
+     * 将裁剪、旋转后的亮度复制到指定的缓冲区，返回以该缓冲区为数据的亮度源。
+     * 这是读取平面的唯一一次复制，之后平面可以立即归还给帧源。
+     * @param buffer 缓冲区，长度不小于 getWidth() * getHeight()
+     * @return 数据无需再次转换的亮度源
+     */
+    public YUVLuminanceSource compact(byte[] buffer) {
+        final int width = getWidth();
+        final int height = getHeight();
+        return new YUVLuminanceSource(copyMatrix(buffer), width, height, 0, 0, width, height, 0);
+    }
+
+    private byte[] copyMatrix(byte[] matrix) {
+        final int width = getWidth();
+        if (mRotation == 0) {
+            for (int y = 0; y < mCropHeight; y++) {
+                readRow(mTop + y, matrix, y * width);
+            }
+            return matrix;
+        }
+        // 按行顺序读取源图（对缓存友好），按旋转方向写入目标位置
+        final byte[] line = new byte[mCropWidth];
+        for (int sy = 0; sy < mCropHeight; sy++) {
+            readRow(mTop + sy, line, 0);
+            for (int sx = 0; sx < mCropWidth; sx++) {
+                final int outputIndex;
+                switch (mRotation) {
+                    case 90:
+                        outputIndex = sx * width + (mCropHeight - 1 - sy);
+                        break;
+                    case 180:
+                        outputIndex = (mCropHeight - 1 - sy) * width + (mCropWidth - 1 - sx);
+                        break;
+                    default:
+                        outputIndex = (mCropWidth - 1 - sx) * width + sy;
+                        break;
+                }
+                matrix[outputIndex] = line[sx];
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * 读取源图第 sourceRow 行裁剪区域内的亮度
+     */
+    private void readRow(int sourceRow, byte[] output, int offset) {
+        final int start = sourceRow * mRowStride + mLeft * mPixelStride;
+        if (mPixelStride == 1) {
+            // 连续的行批量读取；duplicate() 只复制读写位置，不复制数据
+            final ByteBuffer plane = mPlane.duplicate();
+            plane.position(start);
+            plane.get(output, offset, mCropWidth);
+            return;
+        }
+        final ByteBuffer plane = mPlane;
+        for (int x = 0, index = start; x < mCropWidth; x++, index += mPixelStride) {
+            output[offset + x] = plane.get(index);
+        }
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        // 将输出坐标中的裁剪区域换算回源图坐标
+        final int srcLeft, srcTop, srcWidth, srcHeight;
+        switch (mRotation) {
+            case 0:
+                srcLeft = left;
+                srcTop = top;
+                srcWidth = width;
+                srcHeight = height;
+                break;
+            case 90:
+                srcLeft = top;
+                srcTop = mCropHeight - left - width;
+                srcWidth = height;
+                srcHeight = width;
+                break;
+            case 180:
+                srcLeft = mCropWidth - left - width;
+                srcTop = mCropHeight - top - height;
+                srcWidth = width;
+                srcHeight = height;
+                break;
+            default:
+                srcLeft = mCropWidth - top - height;
+                srcTop = left;
+                srcWidth = height;
+                srcHeight = width;
+                break;
+        }
+        return new PlaneLuminanceSource(mPlane, mRowStride, mPixelStride, mDataWidth, mDataHeight,
+                mLeft + srcLeft, mTop + srcTop, srcWidth, srcHeight, mRotation);
+    }
+
+    private static boolean isPortrait(int rotation) {
+        switch (rotation) {
+            case 0:
+            case 180:
+                return false;
+            case 90:
+            case 270:
+                return true;
+            default:
+                throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+    }
+}
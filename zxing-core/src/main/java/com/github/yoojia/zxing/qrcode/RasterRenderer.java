@@ -0,0 +1,129 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 将 BitMatrix 绘制为 ARGB 像素。二维码放大到输出尺寸后由少量模块组成：
+ * 每一行按连续的黑白段整段填充，与上一行相同的行直接复制像素，按块输出。
+ * 缓冲区在多次绘制间复用，非线程安全。
+ */
+public final class RasterRenderer {
+
+    // 每次输出的行数
+    private static final int BLOCK_ROWS = 16;
+
+    private final int mCodeColor;
+    private final int mBackgroundColor;
+
+    private BitArray mRow = new BitArray();
+    private BitArray mPreviousRow = new BitArray();
+    private int[] mBlock;
+
+    /**
+     * @param codeColor 编码块颜色，ARGB
+     * @param backgroundColor 背景色，ARGB
+     */
+    public RasterRenderer(int codeColor, int backgroundColor) {
+        mCodeColor = codeColor;
+        mBackgroundColor = backgroundColor;
+    }
+
+    /**
+     * 绘制为完整的 ARGB 像素数组
+     * @param matrix 二维码矩阵
+     * @return 按行排列的像素数组
+     */
+    public int[] render(BitMatrix matrix) {
+        final int width = matrix.getWidth();
+        final int[] pixels = new int[width * matrix.getHeight()];
+        render(matrix, new RowSink() {
+            @Override
+            public void onRows(int[] block, int top, int rows, int width) {
+                System.arraycopy(block, 0, pixels, top * width, rows * width);
+            }
+        });
+        return pixels;
+    }
+
+    /**
+     * 逐块绘制
+     * @param matrix 二维码矩阵
+     * @param sink 接收像素块
+     */
+    public void render(BitMatrix matrix, RowSink sink) {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        final int words = (width + 31) >>> 5;
+        if (mBlock == null || mBlock.length < width * BLOCK_ROWS) {
+            mBlock = new int[width * BLOCK_ROWS];
+        }
+        final int[] block = mBlock;
+        int blockTop = 0;
+        for (int y = 0; y < height; y++) {
+            final int offset = (y - blockTop) * width;
+            mRow = matrix.getRow(y, mRow);
+            if (y > 0 && isSameRow(mRow, mPreviousRow, words)) {
+                // 上一行可能在已写入的块的最后一行
+                final int previousOffset = offset == 0 ? (BLOCK_ROWS - 1) * width : offset - width;
+                System.arraycopy(block, previousOffset, block, offset, width);
+            } else {
+                fillRow(mRow, width, block, offset, mCodeColor, mBackgroundColor);
+                final BitArray swap = mPreviousRow;
+                mPreviousRow = mRow;
+                mRow = swap;
+            }
+            final int rows = y - blockTop + 1;
+            if (rows == BLOCK_ROWS || y == height - 1) {
+                sink.onRows(block, blockTop, rows, width);
+                blockTop = y + 1;
+            }
+        }
+    }
+
+    private static void fillRow(BitArray row, int width, int[] pixels, int offset, int codeColor, int backgroundColor) {
+        int x = 0;
+        while (x < width) {
+            final int set = Math.min(row.getNextSet(x), width);
+            Arrays.fill(pixels, offset + x, offset + set, backgroundColor);
+            if (set == width) {
+                break;
+            }
+            final int unset = Math.min(row.getNextUnset(set), width);
+            Arrays.fill(pixels, offset + set, offset + unset, codeColor);
+            x = unset;
+        }
+    }
+
+    private static boolean isSameRow(BitArray row, BitArray other, int words) {
+        final int[] bits = row.getBitArray();
+        final int[] otherBits = other.getBitArray();
+        if (bits.length < words || otherBits.length < words) {
+            return false;
+        }
+        for (int i = 0; i < words; i++) {
+            if (bits[i] != otherBits[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 接收绘制完成的像素块
+     */
+    public interface RowSink {
+
+        /**
+         * @param pixels 像素块，按行排列，行间距为 width。只在回调期间有效。
+         * @param top 第一行在图像中的位置
+         * @param rows 行数
+         * @param width 图像宽度
+         */
+        void onRows(int[] pixels, int top, int rows, int width);
+    }
+}
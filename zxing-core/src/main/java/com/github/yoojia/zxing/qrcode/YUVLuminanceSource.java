@@ -0,0 +1,244 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 直接读取相机预览帧(NV21/YV12等)Y分量的亮度源。裁剪和旋转都在亮度域内完成，不需要经过JPEG和Bitmap转换。
+ * Y分量的行宽可以大于帧宽度，如 YV12 的行按16字节对齐。
+ */
+public final class YUVLuminanceSource extends LuminanceSource {
+
+    private final byte[] mYUVData;
+    private final int mDataWidth;
+    private final int mDataHeight;
+    private final int mRowStride;
+    private final int mLeft;
+    private final int mTop;
+    private final int mCropWidth;
+    private final int mCropHeight;
+    private final int mRotation;
+
+    /**
+     * @param yuvData 预览帧数据，前 dataWidth * dataHeight 字节为Y分量
+     * @param dataWidth 预览帧宽度
+     * @param dataHeight 预览帧高度
+     * @param left 裁剪区域左边界，预览帧坐标
+     * @param top 裁剪区域上边界，预览帧坐标
+     * @param cropWidth 裁剪区域宽度，预览帧坐标
+     * @param cropHeight 裁剪区域高度，预览帧坐标
+     * @param rotation 裁剪后顺时针旋转角度，只支持 0, 90, 180, 270
+     */
+    public YUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight,
+                              int left, int top, int cropWidth, int cropHeight, int rotation) {
+        this(yuvData, dataWidth, dataHeight, dataWidth, left, top, cropWidth, cropHeight, rotation);
+    }
+
+    /**
+     * @param yuvData 预览帧数据，前 rowStride * dataHeight 字节为Y分量
+     * @param dataWidth 预览帧宽度
+     * @param dataHeight 预览帧高度
+     * @param rowStride Y分量每行的字节数，不小于 dataWidth
+     * @param left 裁剪区域左边界，预览帧坐标
+     * @param top 裁剪区域上边界，预览帧坐标
+     * @param cropWidth 裁剪区域宽度，预览帧坐标
+     * @param cropHeight 裁剪区域高度，预览帧坐标
+     * @param rotation 裁剪后顺时针旋转角度，只支持 0, 90, 180, 270
+     */
+    public YUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight, int rowStride,
+                              int left, int top, int cropWidth, int cropHeight, int rotation) {
+        super(isPortrait(rotation) ? cropHeight : cropWidth, isPortrait(rotation) ? cropWidth : cropHeight);
+        if (left < 0 || top < 0 || left + cropWidth > dataWidth || top + cropHeight > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        if (rowStride < dataWidth) {
+            throw new IllegalArgumentException("Row stride " + rowStride + " less than width " + dataWidth);
+        }
+        if (yuvData.length < rowStride * (dataHeight - 1) + dataWidth) {
+            throw new IllegalArgumentException("YUV data too short for " + dataWidth + "x" + dataHeight);
+        }
+        mYUVData = yuvData;
+        mDataWidth = dataWidth;
+        mDataHeight = dataHeight;
+        mRowStride = rowStride;
+        mLeft = left;
+        mTop = top;
+        mCropWidth = cropWidth;
+        mCropHeight = cropHeight;
+        mRotation = rotation;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        final int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        final byte[] yuv = mYUVData;
+        switch (mRotation) {
+            case 0:
+                System.arraycopy(yuv, (mTop + y) * mRowStride + mLeft, row, 0, width);
+                break;
+            case 90: {
+                // 输出行 y 对应源图第 y 列，自下而上读取
+                int index = (mTop + mCropHeight - 1) * mRowStride + mLeft + y;
+                for (int x = 0; x < width; x++, index -= mRowStride) {
+                    row[x] = yuv[index];
+                }
+                break;
+            }
+            case 180: {
+                int index = (mTop + mCropHeight - 1 - y) * mRowStride + mLeft + mCropWidth - 1;
+                for (int x = 0; x < width; x++, index--) {
+                    row[x] = yuv[index];
+                }
+                break;
+            }
+            default: {
+                // 270: 输出行 y 对应源图倒数第 y 列，自上而下读取
+                int index = mTop * mRowStride + mLeft + mCropWidth - 1 - y;
+                for (int x = 0; x < width; x++, index += mRowStride) {
+                    row[x] = yuv[index];
+                }
+                break;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        if (isCompact()) {
+            return mYUVData;
+        }
+        return copyMatrix(new byte[getWidth() * getHeight()]);
+    }
+
+    /**
+     * 将裁剪、旋转后的亮度复制到指定的缓冲区，返回以该缓冲区为数据的亮度源。用于复用缓冲区，避免 getMatrix() 每次分配新数组。
+     * @param buffer 缓冲区，长度不小于 getWidth() * getHeight()
+     * @return 数据无需再次转换的亮度源。如果当前亮度源本身无需转换，直接返回自身。
+     */
+    public YUVLuminanceSource compact(byte[] buffer) {
+        if (isCompact()) {
+            return this;
+        }
+        final int width = getWidth();
+        final int height = getHeight();
+        return new YUVLuminanceSource(copyMatrix(buffer), width, height, 0, 0, width, height, 0);
+    }
+
+    /**
+     * 在未旋转的裁剪区域上检查质量，不需要复制亮度
+     */
+    int checkQuality(FrameQuality quality, int[] sharpness) {
+        return quality.check(mYUVData, mRowStride, mLeft, mTop, mCropWidth, mCropHeight, sharpness);
+    }
+
+    /**
+     * 在未旋转的裁剪区域上计算清晰度
+     */
+    int measureSharpness() {
+        return FrameQuality.sharpness(mYUVData, mRowStride, mLeft, mTop, mCropWidth, mCropHeight);
+    }
+
+    /**
+     * 在未旋转的裁剪区域上检测变化
+     */
+    int checkMotion(MotionDetector detector) {
+        return detector.check(mYUVData, mRowStride, mLeft, mTop, mCropWidth, mCropHeight);
+    }
+
+    private boolean isCompact() {
+        return mRotation == 0 && getWidth() == mDataWidth && getHeight() == mDataHeight && mRowStride == mDataWidth;
+    }
+
+    private byte[] copyMatrix(byte[] matrix) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final byte[] yuv = mYUVData;
+        if (mRotation == 0) {
+            int inputOffset = mTop * mRowStride + mLeft;
+            for (int y = 0; y < height; y++, inputOffset += mRowStride) {
+                System.arraycopy(yuv, inputOffset, matrix, y * width, width);
+            }
+            return matrix;
+        }
+        // 顺序读取源图（对缓存友好），按旋转方向写入目标位置
+        for (int sy = 0; sy < mCropHeight; sy++) {
+            final int inputOffset = (mTop + sy) * mRowStride + mLeft;
+            for (int sx = 0; sx < mCropWidth; sx++) {
+                final int outputIndex;
+                switch (mRotation) {
+                    case 90:
+                        outputIndex = sx * width + (mCropHeight - 1 - sy);
+                        break;
+                    case 180:
+                        outputIndex = (mCropHeight - 1 - sy) * width + (mCropWidth - 1 - sx);
+                        break;
+                    default:
+                        outputIndex = (mCropWidth - 1 - sx) * width + sy;
+                        break;
+                }
+                matrix[outputIndex] = yuv[inputOffset + sx];
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        // 将输出坐标中的裁剪区域换算回源图坐标
+        final int srcLeft, srcTop, srcWidth, srcHeight;
+        switch (mRotation) {
+            case 0:
+                srcLeft = left;
+                srcTop = top;
+                srcWidth = width;
+                srcHeight = height;
+                break;
+            case 90:
+                srcLeft = top;
+                srcTop = mCropHeight - left - width;
+                srcWidth = height;
+                srcHeight = width;
+                break;
+            case 180:
+                srcLeft = mCropWidth - left - width;
+                srcTop = mCropHeight - top - height;
+                srcWidth = width;
+                srcHeight = height;
+                break;
+            default:
+                srcLeft = mCropWidth - top - height;
+                srcTop = left;
+                srcWidth = height;
+                srcHeight = width;
+                break;
+        }
+        return new YUVLuminanceSource(mYUVData, mDataWidth, mDataHeight, mRowStride,
+                mLeft + srcLeft, mTop + srcTop, srcWidth, srcHeight, mRotation);
+    }
+
+    private static boolean isPortrait(int rotation) {
+        switch (rotation) {
+            case 0:
+            case 180:
+                return false;
+            case 90:
+            case 270:
+                return true;
+            default:
+                throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+    }
+}
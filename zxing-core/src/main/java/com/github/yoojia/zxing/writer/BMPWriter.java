@@ -0,0 +1,74 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 输出1位调色板 BMP 格式。调色板0为背景色，1为编码块颜色；BMP 不支持透明，忽略颜色的透明度。
+ */
+public class BMPWriter implements MatrixWriter {
+
+    private static final int FILE_HEADER_SIZE = 14;
+    private static final int INFO_HEADER_SIZE = 40;
+    private static final int PALETTE_SIZE = 2 * 4;
+
+    @Override
+    public void write(BitMatrix matrix, int codeColor, int backgroundColor, OutputStream out) throws IOException {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        // 每行按4字节对齐
+        final int stride = (BitRows.bytesPerRow(width) + 3) & ~3;
+        final int dataOffset = FILE_HEADER_SIZE + INFO_HEADER_SIZE + PALETTE_SIZE;
+        final int imageSize = stride * height;
+
+        final byte[] header = new byte[dataOffset];
+        header[0] = 'B';
+        header[1] = 'M';
+        putInt(header, 2, dataOffset + imageSize);
+        putInt(header, 10, dataOffset);
+        putInt(header, 14, INFO_HEADER_SIZE);
+        putInt(header, 18, width);
+        putInt(header, 22, height);
+        putShort(header, 26, 1);
+        putShort(header, 28, 1);
+        putInt(header, 34, imageSize);
+        putInt(header, 46, 2);
+        putColor(header, FILE_HEADER_SIZE + INFO_HEADER_SIZE, backgroundColor);
+        putColor(header, FILE_HEADER_SIZE + INFO_HEADER_SIZE + 4, codeColor);
+
+        final BufferedOutputStream output = new BufferedOutputStream(out);
+        output.write(header);
+        final byte[] line = new byte[stride];
+        BitArray row = new BitArray(width);
+        // BMP 行顺序自下而上
+        for (int y = height - 1; y >= 0; y--) {
+            row = matrix.getRow(y, row);
+            BitRows.pack(row, line, 0, BitRows.bytesPerRow(width));
+            output.write(line);
+        }
+        output.flush();
+    }
+
+    private static void putColor(byte[] buffer, int offset, int argb) {
+        buffer[offset] = (byte) argb;
+        buffer[offset + 1] = (byte) (argb >> 8);
+        buffer[offset + 2] = (byte) (argb >> 16);
+        buffer[offset + 3] = 0;
+    }
+
+    private static void putShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        putShort(buffer, offset, value);
+        putShort(buffer, offset + 2, value >> 16);
+    }
+}
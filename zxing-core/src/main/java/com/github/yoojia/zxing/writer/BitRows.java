@@ -0,0 +1,38 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitArray;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 1位图像格式的行打包工具
+ */
+final class BitRows {
+
+    private BitRows() {
+    }
+
+    /**
+     * 将一行打包为字节，每字节8个点，高位在前，置位的点为1。行尾不足一个字节的部分补0。
+     * @param row 由 BitMatrix.getRow() 读取的行
+     * @param out 输出数组
+     * @param offset 输出起始位置
+     * @param bytes 输出字节数
+     */
+    static void pack(BitArray row, byte[] out, int offset, int bytes) {
+        // BitArray 每个 int 保存32个点，低位在前
+        final int[] bits = row.getBitArray();
+        for (int i = 0; i < bytes; i++) {
+            final int word = i >> 2;
+            final int value = word < bits.length ? (bits[word] >>> ((i & 3) << 3)) & 0xFF : 0;
+            out[offset + i] = (byte) (Integer.reverse(value) >>> 24);
+        }
+    }
+
+    /**
+     * @return 一行打包后的字节数
+     */
+    static int bytesPerRow(int width) {
+        return (width + 7) >> 3;
+    }
+}
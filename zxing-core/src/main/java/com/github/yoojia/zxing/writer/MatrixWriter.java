@@ -0,0 +1,23 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 将二维码矩阵直接写入输出流，不经过 Bitmap。实现类逐行写入，不关闭输出流。
+ */
+public interface MatrixWriter {
+
+    /**
+     * @param matrix 二维码矩阵，置位的点为编码块
+     * @param codeColor 编码块颜色，ARGB
+     * @param backgroundColor 背景色，ARGB
+     * @param out 输出流，写入完成后只刷新不关闭
+     * @throws IOException 写入失败
+     */
+    void write(BitMatrix matrix, int codeColor, int backgroundColor, OutputStream out) throws IOException;
+}
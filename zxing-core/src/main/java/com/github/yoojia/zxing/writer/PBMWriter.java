@@ -0,0 +1,34 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 输出二进制 PBM(P4) 格式。PBM 只有黑白两色，忽略颜色参数：编码块为黑色，背景为白色。
+ */
+public class PBMWriter implements MatrixWriter {
+
+    @Override
+    public void write(BitMatrix matrix, int codeColor, int backgroundColor, OutputStream out) throws IOException {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        final BufferedOutputStream output = new BufferedOutputStream(out);
+        output.write(("P4\n" + width + " " + height + "\n").getBytes(Charset.forName("US-ASCII")));
+        final int bytes = BitRows.bytesPerRow(width);
+        final byte[] line = new byte[bytes];
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            BitRows.pack(row, line, 0, bytes);
+            output.write(line);
+        }
+        output.flush();
+    }
+}
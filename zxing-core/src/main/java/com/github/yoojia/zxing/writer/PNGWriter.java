@@ -0,0 +1,176 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 输出1位调色板 PNG 格式。调色板0为背景色，1为编码块颜色，颜色带透明度时写入 tRNS。
+ * 图像数据逐行压缩，按固定大小分成多个 IDAT 块写出，不需要缓存整张图片。
+ */
+public class PNGWriter implements MatrixWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_SIZE = 8192;
+
+    private final int mCompressionLevel;
+
+    public PNGWriter() {
+        this(Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * @param compressionLevel 压缩级别，0-9
+     */
+    public PNGWriter(int compressionLevel) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Illegal compression level: " + compressionLevel);
+        }
+        mCompressionLevel = compressionLevel;
+    }
+
+    @Override
+    public void write(BitMatrix matrix, int codeColor, int backgroundColor, OutputStream out) throws IOException {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        final BufferedOutputStream output = new BufferedOutputStream(out);
+        final ChunkOutputStream chunk = new ChunkOutputStream(output);
+        output.write(SIGNATURE);
+
+        final DataOutputStream header = new DataOutputStream(chunk);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeByte(1); // 位深度
+        header.writeByte(3); // 调色板
+        header.writeByte(0);
+        header.writeByte(0);
+        header.writeByte(0);
+        chunk.writeChunk("IHDR");
+
+        chunk.write(backgroundColor >> 16);
+        chunk.write(backgroundColor >> 8);
+        chunk.write(backgroundColor);
+        chunk.write(codeColor >> 16);
+        chunk.write(codeColor >> 8);
+        chunk.write(codeColor);
+        chunk.writeChunk("PLTE");
+
+        final int backgroundAlpha = backgroundColor >>> 24;
+        final int codeAlpha = codeColor >>> 24;
+        if (backgroundAlpha != 0xFF || codeAlpha != 0xFF) {
+            chunk.write(backgroundAlpha);
+            chunk.write(codeAlpha);
+            chunk.writeChunk("tRNS");
+        }
+
+        chunk.setAutoFlush("IDAT", IDAT_SIZE);
+        final Deflater deflater = new Deflater(mCompressionLevel);
+        try {
+            final DeflaterOutputStream image = new DeflaterOutputStream(chunk, deflater, IDAT_SIZE);
+            final int bytes = BitRows.bytesPerRow(width);
+            // 每行以过滤类型开头，1位图像不使用过滤
+            final byte[] line = new byte[1 + bytes];
+            BitArray row = new BitArray(width);
+            for (int y = 0; y < height; y++) {
+                row = matrix.getRow(y, row);
+                BitRows.pack(row, line, 1, bytes);
+                image.write(line);
+            }
+            image.finish();
+        } finally {
+            deflater.end();
+        }
+        chunk.writeChunk("IDAT");
+        chunk.setAutoFlush(null, 0);
+
+        chunk.writeChunk("IEND");
+        output.flush();
+    }
+
+    /**
+     * 缓存一个块的数据，写出时加上长度、类型和 CRC
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private final OutputStream mOut;
+        private final CRC32 mCRC = new CRC32();
+        private byte[] mData = new byte[IDAT_SIZE];
+        private int mSize;
+        private String mAutoFlushType;
+        private int mAutoFlushSize;
+
+        ChunkOutputStream(OutputStream out) {
+            mOut = out;
+        }
+
+        /**
+         * 缓存数据达到指定大小时自动写出指定类型的块
+         */
+        void setAutoFlush(String type, int size) {
+            mAutoFlushType = type;
+            mAutoFlushSize = size;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            mData[mSize++] = (byte) b;
+            autoFlush();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final int count = mAutoFlushType == null ? len : Math.min(len, mAutoFlushSize - mSize);
+                ensureCapacity(count);
+                System.arraycopy(b, off, mData, mSize, count);
+                mSize += count;
+                off += count;
+                len -= count;
+                autoFlush();
+            }
+        }
+
+        void writeChunk(String type) throws IOException {
+            final byte[] typeBytes = type.getBytes("US-ASCII");
+            writeInt(mSize);
+            mCRC.reset();
+            mCRC.update(typeBytes);
+            mCRC.update(mData, 0, mSize);
+            mOut.write(typeBytes);
+            mOut.write(mData, 0, mSize);
+            writeInt((int) mCRC.getValue());
+            mSize = 0;
+        }
+
+        private void autoFlush() throws IOException {
+            if (mAutoFlushType != null && mSize >= mAutoFlushSize) {
+                writeChunk(mAutoFlushType);
+            }
+        }
+
+        private void ensureCapacity(int count) {
+            if (mSize + count > mData.length) {
+                final byte[] data = new byte[Math.max(mData.length * 2, mSize + count)];
+                System.arraycopy(mData, 0, data, 0, mSize);
+                mData = data;
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            mOut.write(value >>> 24);
+            mOut.write(value >>> 16);
+            mOut.write(value >>> 8);
+            mOut.write(value);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.yoojia.zxing.writer;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 输出 SVG 格式。每一行的连续编码块合并为一个矩形，与下一行相同的行合并为更高的矩形，
+ * 所有矩形写入同一个 path 元素。
+ */
+public class SVGWriter implements MatrixWriter {
+
+    @Override
+    public void write(BitMatrix matrix, int codeColor, int backgroundColor, OutputStream out) throws IOException {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"" + width
+                + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height
+                + "\" shape-rendering=\"crispEdges\">\n");
+        if ((backgroundColor >>> 24) != 0) {
+            writer.write("<rect width=\"" + width + "\" height=\"" + height + "\"" + fill(backgroundColor) + "/>\n");
+        }
+        writer.write("<path" + fill(codeColor) + " d=\"");
+        BitArray row = new BitArray(width);
+        BitArray next = new BitArray(width);
+        row = matrix.getRow(0, row);
+        int top = 0;
+        for (int y = 1; y <= height; y++) {
+            if (y < height) {
+                next = matrix.getRow(y, next);
+                if (Arrays.equals(row.getBitArray(), next.getBitArray())) {
+                    continue;
+                }
+            }
+            writeRuns(writer, row, width, top, y - top);
+            final BitArray swap = row;
+            row = next;
+            next = swap;
+            top = y;
+        }
+        writer.write("\"/>\n</svg>\n");
+        writer.flush();
+    }
+
+    private static void writeRuns(Writer writer, BitArray row, int width, int top, int rows) throws IOException {
+        int x = row.getNextSet(0);
+        while (x < width) {
+            final int end = Math.min(row.getNextUnset(x), width);
+            writer.write("M" + x + " " + top + "h" + (end - x) + "v" + rows + "h" + (x - end) + "z");
+            x = end < width ? row.getNextSet(end) : width;
+        }
+    }
+
+    private static String fill(int argb) {
+        final String rgb = String.format("#%06X", argb & 0xFFFFFF);
+        final int alpha = argb >>> 24;
+        if (alpha == 0xFF) {
+            return " fill=\"" + rgb + "\"";
+        }
+        return " fill=\"" + rgb + "\" fill-opacity=\"" + String.format(Locale.US, "%.3f", alpha / 255f) + "\"";
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.yoojia.zxing.frame;
+
+import com.github.yoojia.zxing.qrcode.YUVLuminanceSource;
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * PlaneFrame 按平面的间距读取解码区域，平面只归还一次
+ */
+public class PlaneFrameTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int ROW_STRIDE = 96;
+    private static final int PIXEL_STRIDE = 2;
+
+    @Test
+    public void luminanceReadsRegionThroughStrides() {
+        final byte[] luminances = new byte[WIDTH * HEIGHT];
+        new Random(5).nextBytes(luminances);
+        final byte[] plane = new byte[ROW_STRIDE * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                plane[y * ROW_STRIDE + x * PIXEL_STRIDE] = luminances[y * WIDTH + x];
+            }
+        }
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            final TestFrame frame = new TestFrame(ByteBuffer.wrap(plane), rotation);
+            frame.setRegion(4, 3, 24, 20);
+            final LuminanceSource expected = new YUVLuminanceSource(luminances, WIDTH, HEIGHT, 4, 3, 24, 20, rotation);
+            final LuminanceSource actual = frame.luminance();
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertArrayEquals("rotation " + rotation, expected.getMatrix(), actual.getMatrix());
+        }
+    }
+
+    @Test
+    public void releaseRecyclesOnce() {
+        final TestFrame frame = new TestFrame(ByteBuffer.allocate(ROW_STRIDE * HEIGHT), 0);
+        frame.release();
+        frame.release();
+        assertEquals(1, frame.mRecycled);
+    }
+
+    private static final class TestFrame extends PlaneFrame {
+
+        private int mRecycled;
+
+        TestFrame(ByteBuffer plane, int rotation) {
+            super(WIDTH, HEIGHT, FORMAT_YUV_420_888, rotation, 0, plane, ROW_STRIDE, PIXEL_STRIDE);
+        }
+
+        @Override
+        protected void recycle() {
+            mRecycled++;
+        }
+    }
+}
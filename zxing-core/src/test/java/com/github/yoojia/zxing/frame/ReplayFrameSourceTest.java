@@ -0,0 +1,127 @@
+package com.github.yoojia.zxing.frame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 以生成的 NV21 文件回放：帧序列、交出和丢弃的帧数、停止和读取失败
+ */
+public class ReplayFrameSourceTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void unthrottledDeliversEveryFrameInOrder() throws Exception {
+        final ReplayFrameSource source = new ReplayFrameSource(nv21File(6), WIDTH, HEIGHT, 0);
+        final List<Integer> sequence = new ArrayList<>();
+        source.run(new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                sequence.add(firstLuminance(frame));
+                frame.release();
+            }
+        });
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), sequence);
+        assertEquals(6, source.getFrameCount());
+        assertEquals(6, source.getDeliveredCount());
+        assertEquals(0, source.getDroppedCount());
+    }
+
+    @Test
+    public void fixedRateDropsFramesWithoutFreeBuffer() throws Exception {
+        final ReplayFrameSource source = new ReplayFrameSource(nv21File(5), WIDTH, HEIGHT, 0);
+        source.setFrameRate(20);
+        source.setBufferCount(1);
+        final List<Frame> held = new ArrayList<>();
+        source.run(new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                // 不释放：之后的帧没有空闲缓冲区
+                held.add(frame);
+            }
+        });
+        assertEquals(1, held.size());
+        assertEquals(0, firstLuminance(held.get(0)));
+        assertEquals(1, source.getDeliveredCount());
+        assertEquals(4, source.getDroppedCount());
+    }
+
+    @Test
+    public void stopRightAfterStartIsHonoured() throws Exception {
+        final ReplayFrameSource source = new ReplayFrameSource(nv21File(200), WIDTH, HEIGHT, 0);
+        source.start(new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                frame.release();
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        source.stop();
+        source.await();
+        assertTrue("delivered " + source.getDeliveredCount(), source.getDeliveredCount() < 200);
+    }
+
+    @Test
+    public void readFailureIsReportedByAwait() throws Exception {
+        final File file = nv21File(2);
+        final ReplayFrameSource source = new ReplayFrameSource(file, WIDTH, HEIGHT, 0);
+        assertTrue(file.delete());
+        source.start(new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                frame.release();
+            }
+        });
+        try {
+            source.await();
+            fail("IOException expected");
+        } catch (IOException expected) {
+            assertEquals(0, source.getDeliveredCount());
+        }
+    }
+
+    /**
+     * 第 i 帧的Y分量全部为 i，UV分量为128
+     */
+    private File nv21File(int frames) throws IOException {
+        final File file = mFolder.newFile("session_" + WIDTH + "x" + HEIGHT + ".nv21");
+        final byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < frames; i++) {
+                Arrays.fill(frame, 0, WIDTH * HEIGHT, (byte) i);
+                Arrays.fill(frame, WIDTH * HEIGHT, frame.length, (byte) 128);
+                output.write(frame);
+            }
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static int firstLuminance(Frame frame) {
+        return frame.luminance().getMatrix()[0] & 0xFF;
+    }
+}
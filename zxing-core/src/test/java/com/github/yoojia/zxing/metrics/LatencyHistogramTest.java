@@ -0,0 +1,100 @@
+package com.github.yoojia.zxing.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 分桶边界、百分位估算和多线程记录
+ */
+public class LatencyHistogramTest {
+
+    private static final long US = 1000L;
+
+    @Test
+    public void bucketsArePowersOfTwoMicroseconds() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500);
+        histogram.record(US);
+        histogram.record(1999);
+        histogram.record(2 * US);
+        histogram.record(3999);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        // 负数按0记录
+        assertEquals(2, snapshot.getBucketCount(0));
+        assertEquals(2, snapshot.getBucketCount(1));
+        assertEquals(2, snapshot.getBucketCount(2));
+        // 超出范围的耗时落在最后一个桶
+        assertEquals(1, snapshot.getBucketCount(LatencyHistogram.BUCKET_COUNT - 1));
+        assertEquals(2 * US, LatencyHistogram.bucketUpperBound(1));
+    }
+
+    @Test
+    public void percentileIsBucketUpperBoundCappedByMax() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(10 * US);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000 * US);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(90 * 10 * US + 10 * 1000 * US, snapshot.getTotal());
+        assertEquals((90 * 10 * US + 10 * 1000 * US) / 100, snapshot.getMean());
+        assertEquals(1000 * US, snapshot.getMax());
+        // 10微秒在 [8, 16) 微秒的桶中
+        assertEquals(16 * US, snapshot.getPercentile(50));
+        assertEquals(16 * US, snapshot.getPercentile(90));
+        // 1000微秒所在桶的上界为1024微秒，不超过最大值
+        assertEquals(1000 * US, snapshot.getPercentile(99));
+        assertEquals(1000 * US, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getPercentile(99));
+        assertEquals(0, histogram.snapshot().getMean());
+        histogram.record(5 * US);
+        histogram.reset();
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getBucketCount(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIllegalPercentile() {
+        new LatencyHistogram().snapshot().getPercentile(101);
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long nanos = (t + 1) * 100 * US;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(nanos);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(10000 * (100 + 200 + 300 + 400) * US, snapshot.getTotal());
+        assertEquals(400 * US, snapshot.getMax());
+    }
+}
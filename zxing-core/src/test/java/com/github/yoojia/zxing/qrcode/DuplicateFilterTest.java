@@ -0,0 +1,70 @@
+package com.github.yoojia.zxing.qrcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 去重窗口随每次出现顺延，离开画面超过窗口后再次出现为新结果
+ */
+public class DuplicateFilterTest {
+
+    @Test
+    public void repeatsWithinWindowAreDuplicates() {
+        final DuplicateFilter filter = new DuplicateFilter.Builder().setWindow(1000).build();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 0));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 500));
+        // 窗口从最近一次出现开始计算
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 1400));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 2300));
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("b", 2300));
+    }
+
+    @Test
+    public void reappearingAfterWindowIsNew() {
+        final DuplicateFilter filter = new DuplicateFilter.Builder().setWindow(1000).build();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 0));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 1000));
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 2001));
+    }
+
+    @Test
+    public void stillSeenAtInterval() {
+        final DuplicateFilter filter = new DuplicateFilter.Builder()
+                .setWindow(1000)
+                .setStillSeenInterval(600)
+                .build();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 0));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 300));
+        assertEquals(DuplicateFilter.RESULT_STILL_SEEN, filter.filter("a", 600));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 900));
+        assertEquals(DuplicateFilter.RESULT_STILL_SEEN, filter.filter("a", 1200));
+    }
+
+    @Test
+    public void evictsLeastRecentlySeen() {
+        final DuplicateFilter filter = new DuplicateFilter.Builder().setCapacity(2).build();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 0));
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("b", 10));
+        // 再次出现的 a 成为最近的记录，新内容 c 淘汰 b
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 20));
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("c", 30));
+        assertEquals(DuplicateFilter.RESULT_DUPLICATE, filter.filter("a", 40));
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("b", 50));
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        final DuplicateFilter filter = new DuplicateFilter.Builder().build();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 0));
+        filter.clear();
+        assertEquals(DuplicateFilter.RESULT_NEW, filter.filter("a", 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new DuplicateFilter.Builder().setCapacity(0);
+    }
+}
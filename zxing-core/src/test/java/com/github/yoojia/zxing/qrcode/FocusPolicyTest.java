@@ -0,0 +1,69 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 对焦策略只决定是否对焦；对焦后的效果按实际收到的帧判断
+ */
+public class FocusPolicyTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void singleFrameAfterFocusIsEvaluated() {
+        final DecodeMetrics metrics = new DecodeMetrics();
+        final FocusPolicy policy = newPolicy(metrics);
+        assertTrue(policy.shouldFocus(0));
+        assertTrue(policy.isFocusing());
+        policy.onFocusCompleted(true, 200 * MS);
+        assertFalse(policy.isFocusing());
+        // 取帧周期较长，超时前只收到一帧
+        policy.onFrame(60, 700 * MS);
+        assertFalse(policy.shouldFocus(3300 * MS));
+        assertEquals(0, metrics.getCount(DecodeMetrics.COUNTER_FOCUS_INEFFECTIVE));
+    }
+
+    @Test
+    public void noFrameAfterFocusIsIneffective() {
+        final DecodeMetrics metrics = new DecodeMetrics();
+        final FocusPolicy policy = newPolicy(metrics);
+        assertTrue(policy.shouldFocus(0));
+        policy.onFocusCompleted(true, 200 * MS);
+        // 一直没有帧：超时后视为无效并退避
+        assertFalse(policy.shouldFocus(3300 * MS));
+        assertEquals(1, metrics.getCount(DecodeMetrics.COUNTER_FOCUS_INEFFECTIVE));
+        assertEquals(1, metrics.getCount(DecodeMetrics.COUNTER_FOCUS_SKIPPED_BACKOFF));
+    }
+
+    @Test
+    public void sharpFramesSkipFocus() {
+        final DecodeMetrics metrics = new DecodeMetrics();
+        final FocusPolicy policy = newPolicy(metrics);
+        assertTrue(policy.shouldFocus(0));
+        policy.onFocusCompleted(true, 200 * MS);
+        policy.onFrame(60, 300 * MS);
+        policy.onFrame(60, 400 * MS);
+        assertFalse(policy.shouldFocus(500 * MS));
+        assertEquals(1, metrics.getCount(DecodeMetrics.COUNTER_FOCUS_SKIPPED_SHARP));
+        // 清晰度明显下降时重新对焦
+        for (int i = 0; i < 4; i++) {
+            policy.onFrame(10, (600 + i * 100) * MS);
+        }
+        assertTrue(policy.shouldFocus(1000 * MS));
+        assertEquals(1, metrics.getCount(DecodeMetrics.COUNTER_FOCUS_BLURRY));
+    }
+
+    private static FocusPolicy newPolicy(DecodeMetrics metrics) {
+        final FocusPolicy policy = new FocusPolicy.Builder().build();
+        policy.setMetrics(metrics);
+        return policy;
+    }
+}
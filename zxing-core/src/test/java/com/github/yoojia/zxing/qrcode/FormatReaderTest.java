@@ -0,0 +1,121 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.oned.OneDReader;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 一维码的扫描行解码：正反两个方向，每幅图像的所有行尝试完之后重置解码器
+ */
+public class FormatReaderTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 120;
+
+    @Test
+    public void decodesCode128OnScanline() throws Exception {
+        final FormatReader reader = new FormatReader.ScanlineReader(new Code128Reader(), new FormatReader.Scanlines());
+        final Result result = reader.decode(bitmap(code128("ZXingMini-128", false)), null);
+        assertEquals("ZXingMini-128", result.getText());
+        assertEquals(BarcodeFormat.CODE_128, result.getBarcodeFormat());
+    }
+
+    @Test
+    public void decodesMirroredCode128WithForwardPoints() throws Exception {
+        final FormatReader reader = new FormatReader.ScanlineReader(new Code128Reader(), new FormatReader.Scanlines());
+        final Result forward = reader.decode(bitmap(code128("mirrored", false)), null);
+        final Result mirrored = reader.decode(bitmap(code128("mirrored", true)), null);
+        assertEquals("mirrored", mirrored.getText());
+        // 反向解码的坐标换算回图像坐标，与正向图像的坐标左右对称
+        final float left = Math.min(mirrored.getResultPoints()[0].getX(), mirrored.getResultPoints()[1].getX());
+        final float right = Math.max(forward.getResultPoints()[0].getX(), forward.getResultPoints()[1].getX());
+        assertEquals(WIDTH - 1 - right, left, 1f);
+    }
+
+    @Test
+    public void resetsOnceAfterAllScanlines() throws Exception {
+        final CountingReader counting = new CountingReader();
+        final FormatReader reader = new FormatReader.ScanlineReader(counting, new FormatReader.Scanlines());
+        final BinaryBitmap image = bitmap(code128("rows", false));
+        try {
+            reader.decode(image, null);
+            fail("NotFoundException expected");
+        } catch (NotFoundException expected) {
+            // 默认5条扫描行，每行正反两次，行之间不重置
+            assertEquals(10, counting.mRows);
+            assertEquals(1, counting.mResets);
+        }
+        counting.mSucceedAt = counting.mRows + 3;
+        assertNotNull(reader.decode(bitmap(code128("rows", false)), null));
+        assertEquals(2, counting.mResets);
+    }
+
+    @Test
+    public void luminanceDecoderReadsCode128() throws Exception {
+        final LuminanceDecoder decoder = new LuminanceDecoder.Builder()
+                .setFormats(BarcodeFormat.QR_CODE, BarcodeFormat.CODE_128)
+                .build();
+        final DecodeResult result = decoder.decodeResult(code128("decoder 128", false));
+        assertNotNull(result);
+        assertEquals("decoder 128", result.getText());
+        assertEquals(BarcodeFormat.CODE_128, result.getFormat());
+    }
+
+    private static YUVLuminanceSource code128(String content, boolean mirrored) throws WriterException {
+        final BitMatrix code = new Code128Writer().encode(content, BarcodeFormat.CODE_128, WIDTH, HEIGHT);
+        final byte[] luminances = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final boolean dark = code.get(mirrored ? WIDTH - 1 - x : x, y);
+                luminances[y * WIDTH + x] = (byte) (dark ? 30 : 220);
+            }
+        }
+        return new YUVLuminanceSource(luminances, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 0);
+    }
+
+    private static BinaryBitmap bitmap(YUVLuminanceSource source) {
+        return new BinaryBitmap(new HybridBinarizer(source));
+    }
+
+    /**
+     * 记录尝试的行数和重置次数，累计第 mSucceedAt 次尝试时返回结果
+     */
+    private static final class CountingReader extends OneDReader {
+
+        private int mRows;
+        private int mResets;
+        private int mSucceedAt = -1;
+
+        @Override
+        public Result decodeRow(int rowNumber, BitArray row, Map<DecodeHintType, ?> hints) throws NotFoundException {
+            if (++mRows == mSucceedAt) {
+                return new Result("row " + rowNumber, null, null, BarcodeFormat.RSS_14);
+            }
+            throw NotFoundException.getNotFoundInstance();
+        }
+
+        @Override
+        public void reset() {
+            mResets++;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.yoojia.zxing.qrcode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 亮度、对比度和清晰度的判定，YUVLuminanceSource 的裁剪区域与直接指定区域结果一致
+ */
+public class FrameQualityTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    private final FrameQuality mQuality = new FrameQuality.Builder().build();
+
+    @Test
+    public void rejectsDarkBrightAndFlatFrames() {
+        assertEquals(FrameQuality.RESULT_DARK, check(uniform(10)));
+        assertEquals(FrameQuality.RESULT_BRIGHT, check(uniform(250)));
+        assertEquals(FrameQuality.RESULT_FLAT, check(uniform(128)));
+        assertEquals(-1, FrameQuality.sharpness(uniform(128), WIDTH, 0, 0, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void sharpEdgesPass() {
+        final byte[] board = checkerboard();
+        assertEquals(FrameQuality.RESULT_OK, check(board));
+        assertTrue(FrameQuality.sharpness(board, WIDTH, 0, 0, WIDTH, HEIGHT) > 90);
+    }
+
+    @Test
+    public void gradualEdgesAreBlurry() {
+        final byte[] wave = wave();
+        assertEquals(FrameQuality.RESULT_BLURRY, check(wave));
+        assertTrue(FrameQuality.sharpness(wave, WIDTH, 0, 0, WIDTH, HEIGHT) < 10);
+        // 清晰度下限为0时不检查
+        assertEquals(FrameQuality.RESULT_OK, new FrameQuality.Builder().setMinSharpness(0).build()
+                .check(wave, WIDTH, 0, 0, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void luminanceSourceUsesCropRegion() {
+        // 左半边平坦，右半边为棋盘格
+        final byte[] data = checkerboard();
+        for (int y = 0; y < HEIGHT; y++) {
+            Arrays.fill(data, y * WIDTH, y * WIDTH + WIDTH / 2, (byte) 128);
+        }
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            final YUVLuminanceSource left = new YUVLuminanceSource(data, WIDTH, HEIGHT, 0, 0, WIDTH / 2, HEIGHT, rotation);
+            final YUVLuminanceSource right = new YUVLuminanceSource(data, WIDTH, HEIGHT,
+                    WIDTH / 2, 0, WIDTH / 2, HEIGHT, rotation);
+            assertEquals(FrameQuality.RESULT_FLAT, mQuality.check(left));
+            assertEquals(FrameQuality.RESULT_OK, mQuality.check(right));
+            assertEquals(mQuality.check(data, WIDTH, WIDTH / 2, 0, WIDTH / 2, HEIGHT), mQuality.check(right));
+            assertEquals(FrameQuality.sharpness(data, WIDTH, WIDTH / 2, 0, WIDTH / 2, HEIGHT),
+                    FrameQuality.sharpness(right));
+            assertEquals(-1, FrameQuality.sharpness(left));
+        }
+    }
+
+    @Test
+    public void checkWithSharpnessMatchesSeparateCalls() {
+        final byte[][] frames = {uniform(10), uniform(128), checkerboard(), wave()};
+        final int[] sharpness = new int[1];
+        for (byte[] frame : frames) {
+            final YUVLuminanceSource source = new YUVLuminanceSource(frame, WIDTH, HEIGHT, 8, 4, 120, 100, 90);
+            assertEquals(mQuality.check(source), mQuality.check(source, sharpness));
+            assertEquals(FrameQuality.sharpness(source), sharpness[0]);
+        }
+        assertEquals(FrameQuality.RESULT_FLAT, mQuality.check(new byte[4], 2, 0, 0, 1, 2, sharpness));
+        assertEquals(-1, sharpness[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIllegalMeanRange() {
+        new FrameQuality.Builder().setMeanRange(200, 100);
+    }
+
+    private int check(byte[] data) {
+        return mQuality.check(data, WIDTH, 0, 0, WIDTH, HEIGHT);
+    }
+
+    private static byte[] uniform(int value) {
+        final byte[] data = new byte[WIDTH * HEIGHT];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    /**
+     * 8x8 像素的黑白棋盘格，边缘在一个像素内跳变
+     */
+    private static byte[] checkerboard() {
+        final byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (((x / 8 + y / 8) & 1) == 0 ? 40 : 200);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 周期64像素的正弦亮度，对比度足够但相邻像素只有很小的亮度差
+     */
+    private static byte[] wave() {
+        final byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (120 + Math.round(80 * Math.sin(2 * Math.PI * x / 64)));
+            }
+        }
+        return data;
+    }
+}
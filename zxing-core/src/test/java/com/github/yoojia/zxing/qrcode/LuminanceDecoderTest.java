@@ -0,0 +1,53 @@
+package com.github.yoojia.zxing.qrcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 自适应起始级别：反色解码成功后，正常的二维码仍然从正常级别开始解码
+ */
+public class LuminanceDecoderTest {
+
+    @Test
+    public void invertedSuccessKeepsNormalLevels() {
+        final LuminanceDecoder decoder = new LuminanceDecoder.Builder()
+                .setEscalation(LuminanceDecoder.LEVEL_GLOBAL_HISTOGRAM, LuminanceDecoder.LEVEL_INVERTED)
+                .setAdaptiveEscalation(true)
+                .build();
+        final YUVLuminanceSource normal = MatrixBinarizerTest.codeImage(320, 240, 11);
+        final YUVLuminanceSource inverted = invert(MatrixBinarizerTest.codeImage(320, 240, 14));
+        for (int i = 0; i < 3; i++) {
+            final DecodeResult invertedResult = decoder.decodeResult(inverted);
+            assertNotNull(invertedResult);
+            assertEquals(LuminanceDecoder.LEVEL_INVERTED, invertedResult.getLevel());
+            final DecodeResult normalResult = decoder.decodeResult(normal);
+            assertNotNull("normal code after inverted, round " + i, normalResult);
+            assertEquals("binarize 11", normalResult.getText());
+        }
+    }
+
+    @Test
+    public void invertedOnlyEscalation() {
+        final LuminanceDecoder decoder = new LuminanceDecoder.Builder()
+                .setEscalation(LuminanceDecoder.LEVEL_INVERTED, LuminanceDecoder.LEVEL_INVERTED)
+                .build();
+        final DecodeResult result = decoder.decodeResult(invert(MatrixBinarizerTest.codeImage(320, 240, 13)));
+        assertNotNull(result);
+        assertEquals("binarize 13", result.getText());
+    }
+
+    private static YUVLuminanceSource invert(YUVLuminanceSource source) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] luminances = source.getMatrix();
+        final byte[] inverted = new byte[luminances.length];
+        for (int i = 0; i < luminances.length; i++) {
+            inverted[i] = (byte) (255 - (luminances[i] & 0xFF));
+        }
+        return new YUVLuminanceSource(inverted, width, height, 0, 0, width, height, 0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * MatrixBinarizer 与 ZXing 二值化器的结果必须逐位一致
+ */
+public class MatrixBinarizerTest {
+
+    @Test
+    public void matchesZXingOnCodeImages() throws Exception {
+        final MatrixBinarizer binarizer = new MatrixBinarizer();
+        // 包括不是8的整数倍和小于40的尺寸
+        final int[][] sizes = {{320, 240}, {203, 157}, {64, 41}, {39, 80}, {24, 24}};
+        for (int[] size : sizes) {
+            final YUVLuminanceSource source = codeImage(size[0], size[1], size[0] * 31 + size[1]);
+            assertMatches(binarizer, source);
+        }
+    }
+
+    @Test
+    public void matchesZXingOnNoise() throws Exception {
+        final MatrixBinarizer binarizer = new MatrixBinarizer();
+        final Random random = new Random(7);
+        for (int i = 0; i < 5; i++) {
+            final int width = 40 + random.nextInt(200);
+            final int height = 40 + random.nextInt(200);
+            final byte[] luminances = new byte[width * height];
+            random.nextBytes(luminances);
+            assertMatches(binarizer, new YUVLuminanceSource(luminances, width, height, 0, 0, width, height, 0));
+        }
+    }
+
+    @Test
+    public void reusesMatrixForSameSize() throws Exception {
+        final MatrixBinarizer binarizer = new MatrixBinarizer();
+        final BitMatrix first = binarizer.binarize(codeImage(160, 120, 1), true, false);
+        final BitMatrix second = binarizer.binarize(codeImage(160, 120, 2), true, false);
+        assertSame(first, second);
+        // 上一次的结果被清空，而不是叠加
+        assertEquals(new HybridBinarizer(codeImage(160, 120, 2)).getBlackMatrix(), second);
+    }
+
+    private static void assertMatches(MatrixBinarizer binarizer, LuminanceSource source) throws Exception {
+        for (int mode = 0; mode < 4; mode++) {
+            final boolean hybrid = (mode & 1) != 0;
+            final boolean inverted = (mode & 2) != 0;
+            final LuminanceSource input = inverted ? source.invert() : source;
+            final Binarizer expected = hybrid ? new HybridBinarizer(input) : new GlobalHistogramBinarizer(input);
+            final BitMatrix expectedMatrix = blackMatrix(expected);
+            BitMatrix actual;
+            try {
+                actual = binarizer.binarize(source, hybrid, inverted);
+            } catch (NotFoundException e) {
+                actual = null;
+            }
+            final String message = source.getWidth() + "x" + source.getHeight() + " hybrid=" + hybrid
+                    + " inverted=" + inverted;
+            if (expectedMatrix == null) {
+                assertNull(message, actual);
+            } else {
+                assertEquals(message, expectedMatrix, actual);
+            }
+        }
+    }
+
+    private static BitMatrix blackMatrix(Binarizer binarizer) {
+        try {
+            return binarizer.getBlackMatrix();
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 二维码居中，左亮右暗的背景加噪声
+     */
+    static YUVLuminanceSource codeImage(int width, int height, long seed) {
+        final int codeSize = Math.min(width, height) * 3 / 4;
+        final BitMatrix code = new MatrixEncoder.Builder().build().encodeMatrix("binarize " + seed, codeSize, codeSize);
+        final Random random = new Random(seed);
+        final byte[] luminances = new byte[width * height];
+        final int left = (width - code.getWidth()) / 2;
+        final int top = (height - code.getHeight()) / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int mx = x - left;
+                final int my = y - top;
+                final boolean dark = mx >= 0 && my >= 0 && mx < code.getWidth() && my < code.getHeight()
+                        && code.get(mx, my);
+                final int value = (dark ? 40 : 200) - x * 40 / width + (int) (random.nextGaussian() * 8);
+                luminances[y * width + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return new YUVLuminanceSource(luminances, width, height, 0, 0, width, height, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.yoojia.zxing.qrcode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 移动中推迟、画面不变时跳过，以及连续推迟、跳过的上限
+ */
+public class MotionDetectorTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    @Test
+    public void unchangedFrameAfterFailureIsSkipped() {
+        final MotionDetector detector = new MotionDetector.Builder().setMaxSkipped(5, 3).build();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(100)));
+        detector.onDecodeFailed();
+        // 噪点级别的差值视为没有变化，跳过3帧后强制解码一帧
+        assertEquals(MotionDetector.RESULT_UNCHANGED, check(detector, frame(104)));
+        assertEquals(MotionDetector.RESULT_UNCHANGED, check(detector, frame(100)));
+        assertEquals(MotionDetector.RESULT_UNCHANGED, check(detector, frame(97)));
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(100)));
+        assertEquals(MotionDetector.RESULT_UNCHANGED, check(detector, frame(100)));
+    }
+
+    @Test
+    public void decodedFrameIsNotSkipped() {
+        final MotionDetector detector = new MotionDetector.Builder().build();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(100)));
+        detector.onDecodeFailed();
+        assertEquals(MotionDetector.RESULT_UNCHANGED, check(detector, frame(100)));
+        detector.onDecoded();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(100)));
+    }
+
+    @Test
+    public void movingFramesAreDeferred() {
+        final MotionDetector detector = new MotionDetector.Builder().setMaxSkipped(2, 15).build();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(60)));
+        assertEquals(MotionDetector.RESULT_MOVING, check(detector, frame(160)));
+        assertEquals(MotionDetector.RESULT_MOVING, check(detector, frame(60)));
+        // 连续推迟2帧后强制解码
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(160)));
+        // 画面稳定后立即解码
+        assertEquals(MotionDetector.RESULT_MOVING, check(detector, frame(60)));
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(62)));
+    }
+
+    @Test
+    public void resetForgetsPreviousFrames() {
+        final MotionDetector detector = new MotionDetector.Builder().build();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(60)));
+        detector.onDecodeFailed();
+        detector.reset();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(160)));
+        detector.reset();
+        assertEquals(MotionDetector.RESULT_CHANGED, check(detector, frame(160)));
+    }
+
+    @Test
+    public void luminanceSourceUsesCropRegion() {
+        // 只有裁剪区域外的画面变化
+        final byte[] first = frame(100);
+        final byte[] second = frame(100);
+        for (int y = 0; y < HEIGHT; y++) {
+            Arrays.fill(second, y * WIDTH + WIDTH / 2, (y + 1) * WIDTH, (byte) 220);
+        }
+        final MotionDetector detector = new MotionDetector.Builder().build();
+        assertEquals(MotionDetector.RESULT_CHANGED,
+                detector.check(new YUVLuminanceSource(first, WIDTH, HEIGHT, 0, 0, WIDTH / 2, HEIGHT, 90)));
+        detector.onDecodeFailed();
+        assertEquals(MotionDetector.RESULT_UNCHANGED,
+                detector.check(new YUVLuminanceSource(second, WIDTH, HEIGHT, 0, 0, WIDTH / 2, HEIGHT, 90)));
+        // 整帧包括变化的右半边，与前一帧相比变化过大
+        assertEquals(MotionDetector.RESULT_MOVING,
+                detector.check(new YUVLuminanceSource(second, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIllegalMotionThreshold() {
+        new MotionDetector.Builder().setMotionThreshold(0);
+    }
+
+    private static int check(MotionDetector detector, byte[] frame) {
+        return detector.check(frame, WIDTH, 0, 0, WIDTH, HEIGHT);
+    }
+
+    private static byte[] frame(int value) {
+        final byte[] data = new byte[WIDTH * HEIGHT];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
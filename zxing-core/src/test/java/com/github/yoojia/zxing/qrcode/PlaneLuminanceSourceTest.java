@@ -0,0 +1,121 @@
+package com.github.yoojia.zxing.qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 带行尾填充、像素间隔的Y平面，读取结果必须与连续数组的 YUVLuminanceSource 一致
+ */
+public class PlaneLuminanceSourceTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    // {行尾填充, 像素间距}
+    private static final int[][] STRIDES = {{0, 1}, {11, 1}, {0, 2}, {5, 2}, {3, 3}};
+
+    private final byte[] mLuminances = new byte[WIDTH * HEIGHT];
+
+    public PlaneLuminanceSourceTest() {
+        new Random(3).nextBytes(mLuminances);
+    }
+
+    @Test
+    public void matchesContiguousSource() {
+        for (int[] stride : STRIDES) {
+            for (int rotation : ROTATIONS) {
+                final String message = message(stride, rotation);
+                assertSame(message, reference(3, 2, 29, 17, rotation), plane(stride, 3, 2, 29, 17, rotation));
+                assertSame(message, reference(0, 0, WIDTH, HEIGHT, rotation),
+                        plane(stride, 0, 0, WIDTH, HEIGHT, rotation));
+            }
+        }
+    }
+
+    @Test
+    public void cropMatchesContiguousSource() {
+        for (int[] stride : STRIDES) {
+            for (int rotation : ROTATIONS) {
+                final LuminanceSource expected = reference(3, 2, 29, 17, rotation);
+                final LuminanceSource actual = plane(stride, 3, 2, 29, 17, rotation);
+                // 输出坐标中的裁剪区域，旋转后宽高互换
+                final int width = expected.getWidth();
+                final int height = expected.getHeight();
+                assertSame(message(stride, rotation), expected.crop(1, 2, width - 4, height - 3),
+                        actual.crop(1, 2, width - 4, height - 3));
+                assertSame(message(stride, rotation), expected.crop(width / 2, 0, width - width / 2, height / 2),
+                        actual.crop(width / 2, 0, width - width / 2, height / 2));
+            }
+        }
+    }
+
+    @Test
+    public void compactMatchesContiguousSource() {
+        for (int[] stride : STRIDES) {
+            for (int rotation : ROTATIONS) {
+                final LuminanceSource expected = reference(3, 2, 29, 17, rotation);
+                final byte[] buffer = new byte[expected.getWidth() * expected.getHeight()];
+                final YUVLuminanceSource compact = plane(stride, 3, 2, 29, 17, rotation).compact(buffer);
+                assertSame(message(stride, rotation), expected, compact);
+                // 数据在指定的缓冲区中，不再读取平面
+                assertEquals(expected.getMatrix()[0], buffer[0]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortPlane() {
+        final int rowStride = WIDTH + 4;
+        new PlaneLuminanceSource(ByteBuffer.wrap(new byte[rowStride * (HEIGHT - 1) + WIDTH - 1]),
+                rowStride, 1, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 0);
+    }
+
+    private YUVLuminanceSource reference(int left, int top, int width, int height, int rotation) {
+        return new YUVLuminanceSource(mLuminances, WIDTH, HEIGHT, left, top, width, height, rotation);
+    }
+
+    private PlaneLuminanceSource plane(int[] stride, int left, int top, int width, int height, int rotation) {
+        final int pixelStride = stride[1];
+        final int rowStride = (WIDTH - 1) * pixelStride + 1 + stride[0];
+        return new PlaneLuminanceSource(plane(mLuminances, WIDTH, HEIGHT, rowStride, pixelStride),
+                rowStride, pixelStride, WIDTH, HEIGHT, left, top, width, height, rotation);
+    }
+
+    /**
+     * 按间距存放亮度，填充和间隔的字节为无关的值；最后一行没有行尾填充
+     */
+    static ByteBuffer plane(byte[] luminances, int width, int height, int rowStride, int pixelStride) {
+        final byte[] plane = new byte[(height - 1) * rowStride + (width - 1) * pixelStride + 1];
+        Arrays.fill(plane, (byte) 0x5A);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane[y * rowStride + x * pixelStride] = luminances[y * width + x];
+            }
+        }
+        return ByteBuffer.wrap(plane);
+    }
+
+    private static void assertSame(String message, LuminanceSource expected, LuminanceSource actual) {
+        assertEquals(message, expected.getWidth(), actual.getWidth());
+        assertEquals(message, expected.getHeight(), actual.getHeight());
+        assertArrayEquals(message, expected.getMatrix(), actual.getMatrix());
+        final byte[] row = new byte[actual.getWidth()];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            assertArrayEquals(message + " row " + y, expected.getRow(y, null), actual.getRow(y, row));
+        }
+    }
+
+    private static String message(int[] stride, int rotation) {
+        return "padding=" + stride[0] + " pixelStride=" + stride[1] + " rotation=" + rotation;
+    }
+}
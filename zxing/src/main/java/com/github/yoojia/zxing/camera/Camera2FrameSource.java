@@ -0,0 +1,391 @@
+package com.github.yoojia.zxing.camera;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import com.github.yoojia.zxing.frame.FrameSource;
+import com.github.yoojia.zxing.frame.PlaneFrame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 以 Camera2 ImageReader 输出的 YUV_420_888 图像为帧源，需要 API 21 及以上，可用 Cameras.isCamera2Supported() 判断。
+ * 每一帧直接交出图像的Y平面，解码器按行、像素间距读取，不复制为 NV21 数组。
+ *
+ * 图像获取有上限：接收方同时持有的帧数不超过缓冲区数量，ImageReader 额外保留两个图像，
+ * 接收方来不及处理时新图像被取出后直接关闭并计为丢弃，相机始终有可写入的缓冲区，不会因解码过慢而停顿。
+ * 相机的开启和关闭由帧源自己管理，不能与 Cameras 管理的旧版相机同时使用。
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class Camera2FrameSource implements FrameSource {
+
+    private static final String TAG = Camera2FrameSource.class.getSimpleName();
+
+    // acquireLatestImage() 跳过旧图像时需要同时持有两个图像
+    private static final int READER_EXTRA_IMAGES = 2;
+
+    private final Context mContext;
+    private int mBufferCount = 2;
+    private int mPreferredWidth = 1280;
+    private int mPreferredHeight = 720;
+    private SurfaceHolder mPreviewHolder;
+    private int mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight;
+
+    private final Object mLock = new Object();
+    // 当前会话的 ImageReader；stop() 后仍有帧未释放的旧 ImageReader 由这些帧持有，最后一帧释放时关闭
+    private ImageStream mStream;
+    private CameraDevice mDevice;
+    private CameraCaptureSession mSession;
+    private Consumer mConsumer;
+    private int mRotation;
+    private boolean mStopped = true;
+    private volatile long mDeliveredCount;
+    private volatile long mDroppedCount;
+
+    public Camera2FrameSource(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * 设置接收方同时持有的最多帧数，在下次 start() 时生效
+     * @param bufferCount 缓冲区数量，默认2
+     */
+    public void setBufferCount(int bufferCount) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer count must be positive: " + bufferCount);
+        }
+        mBufferCount = bufferCount;
+    }
+
+    /**
+     * 设置期望的帧尺寸，使用相机支持的尺寸中面积最接近的一个，在下次 start() 时生效
+     * @param width 宽度，默认1280
+     * @param height 高度，默认720
+     */
+    public void setPreferredSize(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Illegal frame size: " + width + "x" + height);
+        }
+        mPreferredWidth = width;
+        mPreferredHeight = height;
+    }
+
+    /**
+     * 同时输出预览画面。start() 时将 Surface 尺寸设置为帧尺寸，需要在主线程中调用 start()。
+     * @param holder 预览 SurfaceView 的 SurfaceHolder，为null时不输出预览
+     */
+    public void setPreviewHolder(SurfaceHolder holder) {
+        mPreviewHolder = holder;
+    }
+
+    /**
+     * 指定每一帧只解码的区域。默认解码帧中间的正方形区域。
+     * @param left 左边界，帧坐标
+     * @param top 上边界，帧坐标
+     * @param width 宽度
+     * @param height 高度
+     */
+    public void setRegion(int left, int top, int width, int height) {
+        mRegionLeft = left;
+        mRegionTop = top;
+        mRegionWidth = width;
+        mRegionHeight = height;
+    }
+
+    /**
+     * @return 已交出的帧数
+     */
+    public long getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * @return 接收方持有的帧数达到上限而丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 开启后置相机并开始提供帧，帧在帧源的线程中交给接收方
+     * @throws IOException 相机无法访问
+     */
+    @Override
+    public void start(Consumer consumer) throws IOException {
+        final android.hardware.camera2.CameraManager manager =
+                (android.hardware.camera2.CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
+        synchronized (mLock) {
+            if (!mStopped) {
+                throw new IllegalStateException("Camera2FrameSource already started");
+            }
+            try {
+                final String cameraId = selectCamera(manager);
+                final CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+                final Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                final Size size = selectSize(characteristics);
+                mRotation = orientation == null ? 90 : orientation;
+                final HandlerThread thread = new HandlerThread(TAG);
+                thread.start();
+                final Handler handler = new Handler(thread.getLooper());
+                final ImageReader reader = ImageReader.newInstance(size.getWidth(), size.getHeight(),
+                        ImageFormat.YUV_420_888, mBufferCount + READER_EXTRA_IMAGES);
+                reader.setOnImageAvailableListener(mImageListener, handler);
+                mStream = new ImageStream(reader, thread, mBufferCount);
+                if (mPreviewHolder != null) {
+                    mPreviewHolder.setFixedSize(size.getWidth(), size.getHeight());
+                }
+                mConsumer = consumer;
+                mStopped = false;
+                manager.openCamera(cameraId, mDeviceCallback, handler);
+            } catch (CameraAccessException e) {
+                closeLocked();
+                throw new IOException("Cannot open camera", e);
+            }
+        }
+    }
+
+    /**
+     * 关闭相机。已交出的帧仍然有效，全部释放后才关闭 ImageReader；可以在释放之前再次 start()。
+     */
+    @Override
+    public void stop() {
+        synchronized (mLock) {
+            if (!mStopped) {
+                closeLocked();
+            }
+        }
+    }
+
+    private void closeLocked() {
+        mStopped = true;
+        mConsumer = null;
+        if (mSession != null) {
+            mSession.close();
+            mSession = null;
+        }
+        if (mDevice != null) {
+            mDevice.close();
+            mDevice = null;
+        }
+        if (mStream != null) {
+            mStream.mStopped = true;
+            mStream.closeIfIdle();
+            mStream = null;
+        }
+    }
+
+    private String selectCamera(android.hardware.camera2.CameraManager manager) throws CameraAccessException {
+        final String[] ids = manager.getCameraIdList();
+        if (ids.length == 0) {
+            throw new CameraAccessException(CameraAccessException.CAMERA_DISCONNECTED, "No camera");
+        }
+        for (String id : ids) {
+            final Integer facing = manager.getCameraCharacteristics(id).get(CameraCharacteristics.LENS_FACING);
+            if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                return id;
+            }
+        }
+        return ids[0];
+    }
+
+    private Size selectSize(CameraCharacteristics characteristics) throws CameraAccessException {
+        final StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        final Size[] sizes = map == null ? null : map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (sizes == null || sizes.length == 0) {
+            throw new CameraAccessException(CameraAccessException.CAMERA_ERROR, "YUV_420_888 not supported");
+        }
+        final long preferredArea = (long) mPreferredWidth * mPreferredHeight;
+        Size best = sizes[0];
+        for (Size size : sizes) {
+            final long diff = Math.abs((long) size.getWidth() * size.getHeight() - preferredArea);
+            if (diff < Math.abs((long) best.getWidth() * best.getHeight() - preferredArea)) {
+                best = size;
+            }
+        }
+        return best;
+    }
+
+    private void startSession(CameraDevice device) throws CameraAccessException {
+        final List<Surface> surfaces = new ArrayList<>(2);
+        surfaces.add(mStream.mReader.getSurface());
+        if (mPreviewHolder != null) {
+            surfaces.add(mPreviewHolder.getSurface());
+        }
+        device.createCaptureSession(surfaces, new CameraCaptureSession.StateCallback() {
+            @Override
+            public void onConfigured(CameraCaptureSession session) {
+                synchronized (mLock) {
+                    if (mStopped) {
+                        session.close();
+                        return;
+                    }
+                    mSession = session;
+                    try {
+                        final CaptureRequest.Builder builder = mDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                        for (Surface surface : surfaces) {
+                            builder.addTarget(surface);
+                        }
+                        builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                        session.setRepeatingRequest(builder.build(), null, null);
+                    } catch (CameraAccessException e) {
+                        Log.e(TAG, "- Cannot start repeating request", e);
+                    }
+                }
+            }
+
+            @Override
+            public void onConfigureFailed(CameraCaptureSession session) {
+                Log.e(TAG, "- Cannot configure capture session");
+                // 没有会话就不会再有图像，关闭相机，与相机出错时相同
+                stop();
+            }
+        }, null);
+    }
+
+    private final CameraDevice.StateCallback mDeviceCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(CameraDevice device) {
+            synchronized (mLock) {
+                if (mStopped) {
+                    device.close();
+                    return;
+                }
+                mDevice = device;
+                try {
+                    startSession(device);
+                } catch (CameraAccessException e) {
+                    Log.e(TAG, "- Cannot create capture session", e);
+                }
+            }
+        }
+
+        @Override
+        public void onDisconnected(CameraDevice device) {
+            Log.w(TAG, "- Camera disconnected");
+            stop();
+        }
+
+        @Override
+        public void onError(CameraDevice device, int error) {
+            Log.e(TAG, "- Camera error: " + error);
+            stop();
+        }
+    };
+
+    private final ImageReader.OnImageAvailableListener mImageListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            final Image image;
+            final Consumer consumer;
+            final ImageStream stream;
+            // 在锁内取图像，避免与 stop() 关闭 ImageReader 交错
+            synchronized (mLock) {
+                stream = mStream;
+                if (mStopped || stream == null || reader != stream.mReader) {
+                    return;
+                }
+                // 只取最新的图像，积压的旧图像直接关闭
+                image = reader.acquireLatestImage();
+                if (image == null) {
+                    return;
+                }
+                if (stream.mHeldCount >= stream.mBufferCount) {
+                    image.close();
+                    mDroppedCount++;
+                    return;
+                }
+                stream.mHeldCount++;
+                consumer = mConsumer;
+            }
+            final ImageFrame frame = new ImageFrame(image, stream, mRotation);
+            if (mRegionWidth > 0 && mRegionHeight > 0) {
+                frame.setRegion(mRegionLeft, mRegionTop, mRegionWidth, mRegionHeight);
+            } else {
+                final int targetWH = Math.min(frame.getWidth(), frame.getHeight());
+                frame.setRegion((frame.getWidth() - targetWH) / 2, (frame.getHeight() - targetWH) / 2, targetWH, targetWH);
+            }
+            mDeliveredCount++;
+            consumer.onFrame(frame);
+        }
+    };
+
+    private void onFrameReleased(Image image, ImageStream stream) {
+        synchronized (mLock) {
+            image.close();
+            stream.mHeldCount--;
+            stream.closeIfIdle();
+        }
+    }
+
+    /**
+     * 一次 start() 的 ImageReader 和回调线程。持有的帧数按 ImageReader 分别统计，
+     * stop() 后立即 start() 时，旧 ImageReader 的帧释放不影响新 ImageReader 的上限。
+     */
+    private static final class ImageStream {
+
+        final ImageReader mReader;
+        final HandlerThread mThread;
+        final int mBufferCount;
+        int mHeldCount;
+        boolean mStopped;
+
+        ImageStream(ImageReader reader, HandlerThread thread, int bufferCount) {
+            mReader = reader;
+            mThread = thread;
+            mBufferCount = bufferCount;
+        }
+
+        /**
+         * 已停止且帧全部释放后关闭 ImageReader 和回调线程，在 mLock 内调用
+         */
+        void closeIfIdle() {
+            if (mStopped && mHeldCount == 0) {
+                mReader.close();
+                mThread.quit();
+            }
+        }
+    }
+
+    /**
+     * ImageReader 的一帧，释放时关闭图像
+     */
+    private final class ImageFrame extends PlaneFrame {
+
+        private final Image mImage;
+        private final ImageStream mStream;
+
+        ImageFrame(Image image, ImageStream stream, int rotation) {
+            // 传感器的时间戳：曝光开始的时间，不受图像在队列中等待的影响
+            super(image.getWidth(), image.getHeight(), FORMAT_YUV_420_888, rotation, image.getTimestamp(),
+                    image.getPlanes()[0].getBuffer(), image.getPlanes()[0].getRowStride(),
+                    image.getPlanes()[0].getPixelStride());
+            mImage = image;
+            mStream = stream;
+        }
+
+        @Override
+        protected void recycle() {
+            onFrameReleased(mImage, mStream);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.yoojia.zxing.camera;
+
+import android.graphics.Rect;
+import android.hardware.Camera;
+
+import com.github.yoojia.zxing.frame.FrameSource;
+import com.github.yoojia.zxing.qrcode.CameraPreview;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 以相机预览缓冲区为帧源，每一帧预览都交给接收方。相机的开启和关闭仍由 Cameras 管理，
+ * 帧源只负责设置缓冲区回调，相机重新开启后自动恢复。
+ */
+public class CameraFrameSource implements FrameSource {
+
+    private final Cameras mCameras;
+    private int mBufferCount = 3;
+    private volatile boolean mFramingRectDecode;
+
+    public CameraFrameSource(Cameras cameras) {
+        mCameras = cameras;
+    }
+
+    /**
+     * 设置预览缓冲区数量，在下次 start() 时生效
+     * @param bufferCount 缓冲区数量，默认3
+     */
+    public void setBufferCount(int bufferCount) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer count must be positive: " + bufferCount);
+        }
+        mBufferCount = bufferCount;
+    }
+
+    /**
+     * 是否只解码扫描框内的区域，否则解码预览帧中间的正方形区域
+     * @param enabled 是否只解码扫描框区域，默认false
+     */
+    public void setFramingRectDecode(boolean enabled) {
+        mFramingRectDecode = enabled;
+    }
+
+    @Override
+    public void start(final Consumer consumer) {
+        mCameras.setPreviewCallbackWithBuffer(new Camera.PreviewCallback() {
+            @Override
+            public void onPreviewFrame(byte[] data, Camera camera) {
+                final CameraManager manager = mCameras.getCameraManager();
+                final Rect region = mFramingRectDecode ? manager.getFramingRectInPreview() : null;
+                consumer.onFrame(new CameraPreview(data, manager, true, region));
+            }
+        }, mBufferCount);
+    }
+
+    @Override
+    public void stop() {
+        mCameras.setPreviewCallbackWithBuffer(null, 0);
+    }
+}
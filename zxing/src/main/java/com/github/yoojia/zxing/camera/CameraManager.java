@@ -17,6 +17,7 @@
 package com.github.yoojia.zxing.camera;
 
 import android.content.Context;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
@@ -40,20 +41,32 @@ public final class CameraManager {
 
     private static final String TAG = CameraManager.class.getSimpleName();
 
+    /**
+     * 默认扫描框边长占预览 View 短边的比例，与 FinderView 绘制的扫描框一致
+     */
+    public static final float DEFAULT_FRAMING_RATIO = 0.6f;
+
     private final Context mContext;
 
     private Camera mCamera;
 
     private Rect mFramingRect;
+    private Rect mFramingRectInPreview;
 
     private boolean mInitialized;
     private boolean mPreviewing;
+    private boolean mContinuousFocusRequested;
+    private volatile boolean mContinuousFocus;
 
-    private int mRequestedFramingRectWidth;
-    private int mRequestedFramingRectHeight;
+    private int mManualFramingWidth;
+    private int mManualFramingHeight;
 
     private final Point mScreenResolution = new Point();
+    private final Point mPreviewViewSize = new Point();
     private final Point mCameraResolution = new Point();
+    private int mPreviewFormat = ImageFormat.NV21;
+
+    private final PreviewBufferPool mBufferPool = new PreviewBufferPool();
 
     public CameraManager(Context context) {
         this.mContext = context;
@@ -84,6 +97,8 @@ public final class CameraManager {
             mCamera.release();
             mCamera = null;
             mFramingRect = null;
+            mFramingRectInPreview = null;
+            mBufferPool.reset();
         }else {
             throw new IOException("Camera is not open !");
         }
@@ -95,6 +110,37 @@ public final class CameraManager {
      */
     public void setPreviewCallback(Camera.PreviewCallback callback){
         mCamera.setOneShotPreviewCallback(callback);
+        mBufferPool.reset();
+    }
+
+    /**
+     * 以缓冲区模式设置相机预览回调。按当前预览尺寸和格式分配固定数量的缓冲区，相机只会把帧数据写入这些缓冲区；
+     * 回调得到的 data 使用完毕后，必须通过 addCallbackBuffer() 归还，否则相机将因没有可用缓冲区而丢帧。
+     * @param callback 预览回调接口
+     * @param bufferCount 缓冲区数量
+     */
+    public void setPreviewCallbackWithBuffer(final Camera.PreviewCallback callback, int bufferCount){
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer count must be positive: " + bufferCount);
+        }
+        mBufferPool.reset();
+        mBufferPool.ensure(bufferCount, mCameraResolution.x, mCameraResolution.y, mPreviewFormat);
+        mCamera.setPreviewCallbackWithBuffer(new Camera.PreviewCallback() {
+            @Override
+            public void onPreviewFrame(byte[] data, Camera camera) {
+                mBufferPool.onDelivered(data);
+                callback.onPreviewFrame(data, camera);
+            }
+        });
+        mBufferPool.queueFree(mCamera);
+    }
+
+    /**
+     * 归还预览缓冲区。相机已关闭时缓冲区保留在缓冲池中，下次设置缓冲区回调时再交给相机。
+     * @param buffer 由 setPreviewCallbackWithBuffer() 回调得到的帧数据
+     */
+    public void addCallbackBuffer(byte[] buffer){
+        mBufferPool.recycle(mCamera, buffer);
     }
 
     /**
@@ -104,6 +150,8 @@ public final class CameraManager {
      */
     public void attachPreview(SurfaceHolder previewHolder) throws IOException {
         mCamera.setPreviewDisplay(previewHolder);
+        final Rect frame = previewHolder.getSurfaceFrame();
+        setPreviewViewSize(frame.width(), frame.height());
     }
 
     /**
@@ -134,24 +182,138 @@ public final class CameraManager {
         return mCamera != null;
     }
 
+    public int getPreviewWidth() {
+        return mCameraResolution.x;
+    }
+
+    public int getPreviewHeight() {
+        return mCameraResolution.y;
+    }
+
+    public int getPreviewFormat() {
+        return mPreviewFormat;
+    }
+
+    /**
+     * 设置是否使用连续对焦。设备支持时使用 FOCUS_MODE_CONTINUOUS_PICTURE 或 FOCUS_MODE_CONTINUOUS_VIDEO，
+     * 相机自行保持对焦，不需要定时调用 autoFocus()；不支持时仍为 FOCUS_MODE_AUTO。相机已开启时立即生效。
+     * @param enabled 是否使用连续对焦，默认不使用
+     */
+    public void setContinuousFocus(boolean enabled) {
+        mContinuousFocusRequested = enabled;
+        if (mCamera != null) {
+            final Camera.Parameters parameters = mCamera.getParameters();
+            CameraConfigurationUtils.setFocus(parameters, true, !enabled, false);
+            try {
+                mCamera.setParameters(parameters);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "- Camera rejected focus mode: " + parameters.getFocusMode(), e);
+            }
+            updateFocusMode(mCamera.getParameters());
+        }
+    }
+
+    /**
+     * @return 相机当前是否处于连续对焦模式。请求了连续对焦但设备不支持时返回false
+     */
+    public boolean isContinuousFocus() {
+        return mContinuousFocus;
+    }
+
     //////////////
 
+    /**
+     * 指定扫描框尺寸，扫描框在预览 View 中居中
+     * @param width 宽度，像素，超出预览 View 时取 View 宽度
+     * @param height 高度，像素，超出预览 View 时取 View 高度
+     */
     public synchronized void setManualFramingRect(int width, int height) {
-        if (mInitialized) {
-            if (width > mScreenResolution.x) {
-                width = mScreenResolution.x;
-            }
-            if (height > mScreenResolution.y) {
-                height = mScreenResolution.y;
+        mManualFramingWidth = width;
+        mManualFramingHeight = height;
+        mFramingRect = null;
+        mFramingRectInPreview = null;
+    }
+
+    /**
+     * 设置显示预览的 View 尺寸。扫描框按 View 尺寸计算，与 FinderView 在同样大小的 View 中绘制的扫描框一致；
+     * 未设置时使用屏幕尺寸。attachPreview() 时自动按 Surface 尺寸设置。
+     * @param width 宽度，像素
+     * @param height 高度，像素
+     */
+    public synchronized void setPreviewViewSize(int width, int height) {
+        if (width <= 0 || height <= 0 || (width == mPreviewViewSize.x && height == mPreviewViewSize.y)) {
+            return;
+        }
+        mPreviewViewSize.set(width, height);
+        mFramingRect = null;
+        mFramingRectInPreview = null;
+    }
+
+    /**
+     * 扫描框在预览 View 中的位置。未手动指定时，使用居中、边长为 View 短边 DEFAULT_FRAMING_RATIO 倍的正方形。
+     * @return 扫描框，预览 View 坐标；相机尚未初始化时返回null
+     */
+    public synchronized Rect getFramingRect() {
+        if (mFramingRect == null && mInitialized) {
+            final Point area = framingArea();
+            int width, height;
+            if (mManualFramingWidth > 0 && mManualFramingHeight > 0) {
+                width = Math.min(mManualFramingWidth, area.x);
+                height = Math.min(mManualFramingHeight, area.y);
+            } else {
+                width = height = (int) (Math.min(area.x, area.y) * DEFAULT_FRAMING_RATIO);
             }
-            int leftOffset = (mScreenResolution.x - width) / 2;
-            int topOffset = (mScreenResolution.y - height) / 2;
+            final int leftOffset = (area.x - width) / 2;
+            final int topOffset = (area.y - height) / 2;
             mFramingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
-            Log.d(TAG, "Calculated manual framing rect: " + mFramingRect);
-        } else {
-            mRequestedFramingRectWidth = width;
-            mRequestedFramingRectHeight = height;
+            Log.d(TAG, "Calculated framing rect: " + mFramingRect);
         }
+        return mFramingRect;
+    }
+
+    /**
+     * @return 显示预览的区域尺寸：已知预览 View 尺寸时使用 View 尺寸，否则为屏幕尺寸
+     */
+    private Point framingArea() {
+        return mPreviewViewSize.x > 0 && mPreviewViewSize.y > 0 ? mPreviewViewSize : mScreenResolution;
+    }
+
+    /**
+     * 将扫描框从预览 View 坐标换算为预览帧坐标。预览帧顺时针旋转90度后缩放显示到预览 View，
+     * 因此 View 的纵向对应预览帧的横向，并按两者尺寸比例缩放。
+     * @return 扫描框，预览帧坐标；相机尚未初始化时返回null
+     */
+    public synchronized Rect getFramingRectInPreview() {
+        if (mFramingRectInPreview == null) {
+            final Rect framingRect = getFramingRect();
+            final Point area = framingArea();
+            if (framingRect == null || area.x == 0 || area.y == 0) {
+                return null;
+            }
+            final int previewWidth = mCameraResolution.x;
+            final int previewHeight = mCameraResolution.y;
+            final int viewWidth = area.x;
+            final int viewHeight = area.y;
+            final Rect rect = new Rect();
+            if (viewWidth < viewHeight) {
+                // 竖屏：屏幕 y 轴对应预览帧 x 轴，屏幕 x 轴对应预览帧 y 轴的反方向
+                rect.left = framingRect.top * previewWidth / viewHeight;
+                rect.right = framingRect.bottom * previewWidth / viewHeight;
+                rect.top = previewHeight - framingRect.right * previewHeight / viewWidth;
+                rect.bottom = previewHeight - framingRect.left * previewHeight / viewWidth;
+            } else {
+                rect.left = framingRect.left * previewWidth / viewWidth;
+                rect.right = framingRect.right * previewWidth / viewWidth;
+                rect.top = framingRect.top * previewHeight / viewHeight;
+                rect.bottom = framingRect.bottom * previewHeight / viewHeight;
+            }
+            if (!rect.intersect(0, 0, previewWidth, previewHeight)) {
+                return null;
+            }
+            mFramingRectInPreview = rect;
+            Log.d(TAG, "Calculated framing rect in preview: " + rect);
+        }
+        return mFramingRectInPreview;
     }
 
     private void initCamera(){
@@ -159,11 +321,6 @@ public final class CameraManager {
         if (!mInitialized) {
             mInitialized = true;
             initFromCameraParameters(mCamera);
-            if (mRequestedFramingRectWidth > 0 && mRequestedFramingRectHeight > 0) {
-                setManualFramingRect(mRequestedFramingRectWidth, mRequestedFramingRectHeight);
-                mRequestedFramingRectWidth = 0;
-                mRequestedFramingRectHeight = 0;
-            }
         }
         Camera.Parameters parameters = mCamera.getParameters();
         try {
@@ -199,7 +356,7 @@ public final class CameraManager {
         Camera.Parameters parameters = camera.getParameters();
         CameraConfigurationUtils.setFocus( parameters,
                 true, // auto focus
-                true, // disable continuous
+                !mContinuousFocusRequested, // disable continuous
                 safeMode);
         parameters.setPreviewSize(mCameraResolution.x, mCameraResolution.y);
         camera.setParameters(parameters);
@@ -211,6 +368,16 @@ public final class CameraManager {
             mCameraResolution.x = afterSize.width;
             mCameraResolution.y = afterSize.height;
         }
+        mPreviewFormat = afterParameters.getPreviewFormat();
+        mFramingRectInPreview = null;
+        updateFocusMode(afterParameters);
+    }
+
+    private void updateFocusMode(Camera.Parameters parameters) {
+        final String mode = parameters.getFocusMode();
+        mContinuousFocus = Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(mode)
+                || Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO.equals(mode);
+        Log.i(TAG, "- Focus mode: " + mode);
     }
 
 }
@@ -1,10 +1,13 @@
 package com.github.yoojia.zxing.camera;
 
 import android.hardware.Camera;
+import android.os.Build;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import com.github.yoojia.zxing.qrcode.FocusPolicy;
+
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -22,6 +25,9 @@ public class Cameras {
 
     private FocusManager mFocusManager;
 
+    private Camera.PreviewCallback mBufferedPreviewCallback;
+    private int mPreviewBufferCount;
+
     private final SurfaceViewReadyCallback mViewReadyCallback = new SurfaceViewReadyCallback() {
         @Override
         public void surfaceCreated(SurfaceHolder holder) {
@@ -30,6 +36,12 @@ public class Cameras {
             mPreviewTask.run();
         }
 
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            // 扫描框按预览 View 尺寸计算，与 FinderView 一致
+            mCameraManager.setPreviewViewSize(width, height);
+        }
+
         @Override
         public void surfaceDestroyed(SurfaceHolder holder) {
             super.surfaceDestroyed(holder);
@@ -44,6 +56,9 @@ public class Cameras {
             Log.d(TAG, "- NOW open camera and start preview...");
             try {
                 mCameraManager.attachPreview(mPreviewSurfaceView.getHolder());
+                if (mBufferedPreviewCallback != null) {
+                    mCameraManager.setPreviewCallbackWithBuffer(mBufferedPreviewCallback, mPreviewBufferCount);
+                }
                 mCameraManager.startPreview();
                 if (mFocusManager.isAutoFocusEnabled()) {
                     mFocusManager.startAutoFocus(mCameraManager.getCamera());
@@ -62,6 +77,14 @@ public class Cameras {
         mFocusManager = new FocusManager();
     }
 
+    /**
+     * 系统是否支持 Camera2。支持时可以用 Camera2FrameSource 代替本类，直接读取 ImageReader 图像的Y平面。
+     * @return API 21 及以上返回true
+     */
+    public static boolean isCamera2Supported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
     public void start() {
         Log.d(TAG, "- Try open camera and start preview...");
         try {
@@ -92,6 +115,73 @@ public class Cameras {
         }
     }
 
+    /**
+     * 以缓冲区模式接收预览帧，相机重新开启后自动恢复。帧数据使用完毕后必须通过 addCallbackBuffer() 归还。
+     * @param callback 预览回调接口，为null时关闭缓冲区模式
+     * @param bufferCount 缓冲区数量
+     */
+    public void setPreviewCallbackWithBuffer(Camera.PreviewCallback callback, int bufferCount) {
+        mBufferedPreviewCallback = callback;
+        mPreviewBufferCount = bufferCount;
+        if (mCameraManager.isOpen()) {
+            if (callback != null) {
+                mCameraManager.setPreviewCallbackWithBuffer(callback, bufferCount);
+            } else {
+                mCameraManager.setPreviewCallback(null);
+            }
+        }
+    }
+
+    /**
+     * 归还预览缓冲区
+     * @param buffer 帧数据
+     */
+    public void addCallbackBuffer(byte[] buffer) {
+        mCameraManager.addCallbackBuffer(buffer);
+    }
+
+    /**
+     * 指定扫描框尺寸，扫描框在预览 View 中居中
+     * @param width 宽度，像素
+     * @param height 高度，像素
+     */
+    public void setFramingRect(int width, int height) {
+        mCameraManager.setManualFramingRect(width, height);
+    }
+
+    public CameraManager getCameraManager() {
+        return mCameraManager;
+    }
+
+    /**
+     * 设置是否使用连续对焦，相机重新开启后自动恢复。切换后按实际的对焦模式停止或恢复定时对焦。
+     * @param enabled 是否使用连续对焦
+     */
+    public void setContinuousFocus(boolean enabled) {
+        mCameraManager.setContinuousFocus(enabled);
+        if (mCameraManager.isOpen() && mFocusManager.isAutoFocusEnabled()) {
+            mFocusManager.startAutoFocus(mCameraManager.getCamera());
+        }
+    }
+
+    /**
+     * 设置自适应对焦策略，代替固定周期的定时对焦。已开启定时对焦时立即生效。
+     * @param policy 对焦策略，为null时恢复固定周期对焦
+     */
+    public void setFocusPolicy(FocusPolicy policy) {
+        mFocusManager.setFocusPolicy(policy);
+        if (mCameraManager.isOpen() && mFocusManager.isAutoFocusEnabled()) {
+            mFocusManager.startAutoFocus(mCameraManager.getCamera());
+        }
+    }
+
+    /**
+     * @return 相机当前是否处于连续对焦模式
+     */
+    public boolean isContinuousFocus() {
+        return mCameraManager.isContinuousFocus();
+    }
+
     public void startAutoFocus(int period, Camera.AutoFocusCallback callback) {
         mFocusManager.setAutoFocus(period, callback);
         if (mCameraManager.isOpen() && mFocusManager.isAutoFocusEnabled()) {
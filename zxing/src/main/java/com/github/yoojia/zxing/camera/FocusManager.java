@@ -5,6 +5,8 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import com.github.yoojia.zxing.qrcode.FocusPolicy;
+
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -12,6 +14,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class FocusManager {
 
+    // 使用对焦策略时检查是否需要对焦的间隔，单位：毫秒
+    private static final int POLICY_CHECK_INTERVAL = 100;
+
     private final AtomicInteger mPeriod = new AtomicInteger(0);
 
     private final Handler mFocusHandler = new Handler(Looper.getMainLooper());
@@ -20,6 +25,7 @@ public class FocusManager {
 
     private Camera.AutoFocusCallback mAutoFocusCallback;
     private boolean mEnabledAutoFocus;
+    private FocusPolicy mFocusPolicy;
 
     /**
      * 请求相机执行对焦动作
@@ -31,17 +37,18 @@ public class FocusManager {
     }
 
     /**
-     * 开启定时自动对焦
+     * 开启定时自动对焦。只在 FOCUS_MODE_AUTO 和 FOCUS_MODE_MACRO 模式下生效，连续对焦等模式下停止已有的定时对焦。
      *
      * @param camera 相机对象
      */
     public void startAutoFocus(Camera camera) {
+        // Remove pre task
+        if (mAutoFocusTask != null) {
+            mFocusHandler.removeCallbacks(mAutoFocusTask);
+            mAutoFocusTask = null;
+        }
         final String mode = camera.getParameters().getFocusMode();
         if (Camera.Parameters.FOCUS_MODE_AUTO.equals(mode) || Camera.Parameters.FOCUS_MODE_MACRO.equals(mode)) {
-            // Remove pre task
-            if (mAutoFocusTask != null) {
-                mFocusHandler.removeCallbacks(mAutoFocusTask);
-            }
             mAutoFocusTask = new AutoFocusTask(camera, mAutoFocusCallback);
             mFocusHandler.post(mAutoFocusTask);
         }
@@ -61,6 +68,17 @@ public class FocusManager {
         mEnabledAutoFocus = cb != null;
     }
 
+    /**
+     * 设置自适应对焦策略。设置后定时对焦不再按固定周期执行，而是每隔100毫秒询问策略是否需要对焦，
+     * 对焦完成后将结果反馈给策略；策略所需的清晰度和解码结果由解码线程提供。在下次 startAutoFocus() 时生效。
+     * 策略只决定是否执行对焦扫描：距上次回调满一个周期且不在对焦中时，不对焦也以 success=true 回调，
+     * 表示相机保持上一次的对焦，可以取帧。
+     * @param policy 对焦策略，为null时恢复固定周期对焦
+     */
+    public void setFocusPolicy(FocusPolicy policy) {
+        mFocusPolicy = policy;
+    }
+
     /**
      * 停止自动对焦
      */
@@ -68,6 +86,10 @@ public class FocusManager {
         mEnabledAutoFocus = false;
         mFocusHandler.removeCallbacks(mAutoFocusTask);
         camera.cancelAutoFocus();
+        if (mFocusPolicy != null) {
+            // 取消的对焦不会回调，重新开始时不沿用之前的状态
+            mFocusPolicy.reset();
+        }
     }
 
     public boolean isAutoFocusEnabled() {
@@ -78,18 +100,47 @@ public class FocusManager {
 
         private final Camera mCamera;
         private final Camera.AutoFocusCallback mAutoFocusCallback;
+        private final FocusPolicy mPolicy;
+        // 使用对焦策略时下一次按周期取帧的时间，System.nanoTime()
+        private volatile long mNextFrame = System.nanoTime();
+        private final Camera.AutoFocusCallback mPolicyCallback = new Camera.AutoFocusCallback() {
+            @Override
+            public void onAutoFocus(boolean success, Camera camera) {
+                final long now = System.nanoTime();
+                mPolicy.onFocusCompleted(success, now);
+                mNextFrame = now + mPeriod.get() * 1000000L;
+                if (mAutoFocusCallback != null) {
+                    mAutoFocusCallback.onAutoFocus(success, camera);
+                }
+            }
+        };
 
         private AutoFocusTask(Camera camera, Camera.AutoFocusCallback cb) {
             mCamera = camera;
             mAutoFocusCallback = cb;
+            mPolicy = mFocusPolicy;
         }
 
         @Override
         public void run() {
+            if (mPolicy != null) {
+                final long now = System.nanoTime();
+                if (mPolicy.shouldFocus(now)) {
+                    requestAutoFocus(mCamera, mPolicyCallback);
+                } else if (!mPolicy.isFocusing() && now - mNextFrame >= 0) {
+                    // 画面清晰或退避中不对焦，仍按周期取帧，否则解码器和策略都收不到新的帧
+                    mNextFrame = now + mPeriod.get() * 1000000L;
+                    if (mAutoFocusCallback != null) {
+                        mAutoFocusCallback.onAutoFocus(true, mCamera);
+                    }
+                }
+                mFocusHandler.postDelayed(this, POLICY_CHECK_INTERVAL);
+                return;
+            }
             requestAutoFocus(mCamera, mAutoFocusCallback);
             final int period = mPeriod.get();
             if (period > 0) {
-                mFocusHandler.postDelayed(mAutoFocusTask, period);
+                mFocusHandler.postDelayed(this, period);
             }
         }
     }
@@ -0,0 +1,109 @@
+package com.github.yoojia.zxing.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+/**
+ * 相机预览回调缓冲区池。缓冲区在相机、解码器之间循环使用，只有解码器归还后才重新交给相机，
+ * 避免相机每一帧都分配新的 byte[]。
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 1.0
+ */
+final class PreviewBufferPool {
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_QUEUED = 1;
+    private static final int STATE_HELD = 2;
+
+    private byte[][] mBuffers = new byte[0][];
+    private int[] mStates = new int[0];
+
+    /**
+     * 按预览尺寸和格式准备缓冲区。数量和大小都没有变化时复用已有缓冲区。
+     */
+    synchronized void ensure(int count, int width, int height, int format) {
+        final int frameSize = frameSize(width, height, format);
+        if (mBuffers.length == count && (count == 0 || mBuffers[0].length == frameSize)) {
+            return;
+        }
+        // 旧缓冲区即使仍被解码器持有，归还时也会因为不在池中而被丢弃
+        mBuffers = new byte[count][];
+        mStates = new int[count];
+        for (int i = 0; i < count; i++) {
+            mBuffers[i] = new byte[frameSize];
+        }
+    }
+
+    /**
+     * 将所有空闲缓冲区交给相机
+     */
+    synchronized void queueFree(Camera camera) {
+        for (int i = 0; i < mBuffers.length; i++) {
+            if (mStates[i] == STATE_FREE) {
+                camera.addCallbackBuffer(mBuffers[i]);
+                mStates[i] = STATE_QUEUED;
+            }
+        }
+    }
+
+    /**
+     * 相机已将缓冲区填充并回调，缓冲区由解码器持有
+     */
+    synchronized void onDelivered(byte[] data) {
+        final int index = indexOf(data);
+        if (index >= 0) {
+            mStates[index] = STATE_HELD;
+        }
+    }
+
+    /**
+     * 解码器归还缓冲区。相机可用时直接交给相机，否则保持空闲。
+     * @return 缓冲区是否属于本缓冲池
+     */
+    synchronized boolean recycle(Camera camera, byte[] data) {
+        final int index = indexOf(data);
+        if (index < 0 || mStates[index] != STATE_HELD) {
+            return false;
+        }
+        mStates[index] = STATE_FREE;
+        if (camera != null) {
+            try {
+                camera.addCallbackBuffer(data);
+                mStates[index] = STATE_QUEUED;
+            } catch (RuntimeException e) {
+                // 相机在归还过程中被释放
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 相机释放或回调模式切换后，相机持有的缓冲区队列被清空
+     */
+    synchronized void reset() {
+        for (int i = 0; i < mStates.length; i++) {
+            if (mStates[i] == STATE_QUEUED) {
+                mStates[i] = STATE_FREE;
+            }
+        }
+    }
+
+    private int indexOf(byte[] data) {
+        for (int i = 0; i < mBuffers.length; i++) {
+            if (mBuffers[i] == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int frameSize(int width, int height, int format) {
+        if (format == ImageFormat.YV12) {
+            // YV12 的行宽按16字节对齐，见 Camera.Parameters.setPreviewFormat() 文档
+            final int yStride = (int) Math.ceil(width / 16.0) * 16;
+            final int uvStride = (int) Math.ceil((yStride / 2) / 16.0) * 16;
+            return yStride * height + uvStride * height;
+        }
+        return width * height * ImageFormat.getBitsPerPixel(format) / 8;
+    }
+}
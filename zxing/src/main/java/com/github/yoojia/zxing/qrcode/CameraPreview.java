@@ -7,25 +7,92 @@ import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.hardware.Camera;
 
+import com.github.yoojia.zxing.camera.CameraManager;
+import com.github.yoojia.zxing.frame.Frame;
+import com.google.zxing.LuminanceSource;
+
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public final class CameraPreview {
+/**
+ * 相机预览帧，顺时针旋转90度后与预览方向一致
+ */
+public final class CameraPreview extends Frame {
 
     public final byte[] data;
     public final Camera camera;
 
+    private final CameraManager mRecycler;
+    private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
     public CameraPreview(byte[] data, Camera camera) {
+        this(data, camera, camera.getParameters());
+    }
+
+    private CameraPreview(byte[] data, Camera camera, Camera.Parameters parameters) {
+        super(parameters.getPreviewSize().width, parameters.getPreviewSize().height,
+                parameters.getPreviewFormat(), 90, System.nanoTime());
         this.data = data;
         this.camera = camera;
+        mRecycler = null;
+        setDefaultRegion(null);
+    }
+
+    /**
+     * 使用 CameraManager 已协商的预览尺寸和格式，避免每帧读取相机参数
+     * @param data 帧数据
+     * @param cameraManager 相机管理器
+     * @param recyclable 帧数据是否来自预览缓冲区，是则在 release() 时归还给相机
+     */
+    public CameraPreview(byte[] data, CameraManager cameraManager, boolean recyclable) {
+        this(data, cameraManager, recyclable, null);
+    }
+
+    /**
+     * @param data 帧数据
+     * @param cameraManager 相机管理器
+     * @param recyclable 帧数据是否来自预览缓冲区，是则在 release() 时归还给相机
+     * @param region 只解码的区域，预览帧坐标，如 CameraManager.getFramingRectInPreview()；为null时解码居中的正方形区域
+     */
+    public CameraPreview(byte[] data, CameraManager cameraManager, boolean recyclable, Rect region) {
+        super(cameraManager.getPreviewWidth(), cameraManager.getPreviewHeight(),
+                cameraManager.getPreviewFormat(), 90, System.nanoTime());
+        this.data = data;
+        this.camera = cameraManager.getCamera();
+        mRecycler = recyclable ? cameraManager : null;
+        setDefaultRegion(region);
+    }
+
+    /**
+     * 解码区域：指定的区域有效时使用该区域，否则为居中的正方形
+     */
+    private void setDefaultRegion(Rect region) {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (region != null && region.left >= 0 && region.top >= 0
+                && region.right <= width && region.bottom <= height && !region.isEmpty()) {
+            setRegion(region.left, region.top, region.width(), region.height());
+        } else {
+            final int targetWH = width > height ? height : width;
+            setRegion((width - targetWH) / 2, (height - targetWH) / 2, targetWH, targetWH);
+        }
+    }
+
+    /**
+     * 帧数据使用完毕。对于来自预览缓冲区的帧，将缓冲区归还给相机；多次调用只归还一次。
+     * 释放后不能再使用 data 及由它构建的亮度源。
+     */
+    @Override
+    public void release(){
+        if (mRecycler != null && mReleased.compareAndSet(false, true)) {
+            mRecycler.addCallbackBuffer(data);
+        }
     }
 
     public Bitmap capture(){
-        final Camera.Parameters parameters = camera.getParameters();
-        final int width = parameters.getPreviewSize().width;
-        final int height = parameters.getPreviewSize().height;
-        final YuvImage yuv = new YuvImage(data, parameters.getPreviewFormat(), width, height, null);
+        final YuvImage yuv = new YuvImage(data, getFormat(), getWidth(), getHeight(), null);
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuv.compressToJpeg(new Rect(0, 0, width, height), 100, out);// Best
+        yuv.compressToJpeg(new Rect(0, 0, getWidth(), getHeight()), 100, out);// Best
         final byte[] bytes = out.toByteArray();
         final Bitmap src = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
         final Matrix matrix = new Matrix();
@@ -37,4 +104,35 @@ public final class CameraPreview {
         final int offsetY = originWidth > originHeight ? 0 : (originHeight - originWidth);
         return Bitmap.createBitmap(src, offsetX, offsetY, targetWH, targetWH, matrix, true);
     }
-}
\ No newline at end of file
+
+    /**
+     * 直接从预览帧的Y分量构建亮度源：裁剪为指定的解码区域（未指定时为居中的正方形），并顺时针旋转90度，与相机预览方向一致。
+     * @return 亮度源。如果预览格式不是Y分量在前的平面YUV格式，返回null，此时应使用 capture()。
+     */
+    @Override
+    public LuminanceSource luminance(){
+        if (!isPlanarYUV(getFormat())) {
+            return null;
+        }
+        return luminance(data);
+    }
+
+    /**
+     * 将亮度源渲染为灰度图片，用于显示实际参与解码的图像。
+     * @param source 亮度源
+     * @return 灰度图片
+     */
+    public static Bitmap render(LuminanceSource source){
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] luminances = source.getMatrix();
+        final int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            final int gray = luminances[i] & 0xFF;
+            pixels[i] = 0xFF000000 | (gray * 0x00010101);
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+}
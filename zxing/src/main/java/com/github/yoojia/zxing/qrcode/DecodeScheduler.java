@@ -0,0 +1,582 @@
+package com.github.yoojia.zxing.qrcode;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.github.yoojia.zxing.frame.Frame;
+import com.github.yoojia.zxing.frame.FrameSource;
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+import com.google.zxing.LuminanceSource;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
+ * @since 1.0
+ * 预览帧解码调度器。在独立的工作线程中解码，最多保留一个待解码帧：
+ * 工作线程都忙碌时新帧覆盖旧帧，被覆盖的帧直接释放并计为丢弃，因此结果延迟最多为一次解码的时间。
+ *
+ * 使用多个工作线程时，每个线程持有独立的 Decoder。每一帧按提交顺序编号，某一帧解码成功后，
+ * 比它更早、仍在解码中的帧被取消，早于已回调结果的帧也不再回调，保证同一时刻只有最先成功的结果被回调一次。
+ * 取消是协作式的：被取消的工作线程收到中断，解码器只在逐级尝试、金字塔层级和码制之间检查中断状态，
+ * 正在进行的一次 ZXing 定位/解码仍会执行完毕，只是结果不再回调。
+ *
+ * 调度器可以直接作为 FrameSource 的接收方，如 CameraFrameSource、Camera2FrameSource 或回放录制帧的 ReplayFrameSource。
+ * Y平面帧(PlaneFrame)的亮度在解码前复制一次到工作线程的缓冲区后立即释放。
+ */
+public abstract class DecodeScheduler implements FrameSource.Consumer {
+
+    public static final String TAG = DecodeScheduler.class.getSimpleName();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Decoder mSharedDecoder;
+    private final Decoder.Builder mDecoderBuilder;
+    private int mWorkerCount;
+
+    private final Object mLock = new Object();
+    private volatile Worker[] mWorkers;
+    // 上一次停止的工作线程，使用共享解码器时新线程等待它们退出后才开始解码
+    private Worker[] mRetired;
+    private Job mPending;
+    private long mNextSequence;
+    private volatile long mDeliveredSequence = -1;
+
+    private volatile DecodeMetrics mMetrics = new DecodeMetrics();
+    private volatile FrameQuality mFrameQuality;
+    private volatile MotionDetector mMotionDetector;
+    private volatile FocusPolicy mFocusPolicy;
+    private volatile boolean mMultiple;
+
+    /**
+     * 使用单个工作线程和指定的解码器
+     * @param decoder 解码器
+     */
+    public DecodeScheduler(Decoder decoder) {
+        mSharedDecoder = decoder;
+        mDecoderBuilder = null;
+        mWorkerCount = 1;
+    }
+
+    /**
+     * 使用多个工作线程，每个工作线程由 builder 创建独立的解码器
+     * @param builder 解码器配置
+     * @param workerCount 工作线程数量
+     */
+    public DecodeScheduler(Decoder.Builder builder, int workerCount) {
+        checkWorkerCount(workerCount);
+        mSharedDecoder = null;
+        mDecoderBuilder = builder;
+        mWorkerCount = workerCount;
+    }
+
+    /**
+     * 设置工作线程数量，正在运行时立即以新数量重启工作线程
+     * @param workerCount 工作线程数量
+     */
+    public void setWorkerCount(int workerCount) {
+        checkWorkerCount(workerCount);
+        if (mDecoderBuilder == null && workerCount != 1) {
+            throw new IllegalStateException("Scheduler with a shared Decoder supports only one worker");
+        }
+        synchronized (mLock) {
+            mWorkerCount = workerCount;
+            if (mWorkers != null && mWorkers.length != workerCount) {
+                stopWorkers();
+                startWorkers();
+            }
+        }
+    }
+
+    /**
+     * 设置帧计数和调度阶段耗时的记录对象。解码器内部各阶段的耗时由 Decoder.Builder.setMetrics() 设置。
+     * @param metrics 记录对象，不能为null
+     */
+    public void setMetrics(DecodeMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics must not be null");
+        }
+        mMetrics = metrics;
+    }
+
+    public DecodeMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 设置解码前的帧质量预检。未通过预检的帧不解码，按原因计入 DecodeMetrics 的 COUNTER_REJECTED_* 计数，
+     * 不计为解码失败。只对可以直接读取亮度的预览格式生效。
+     * @param quality 质量预检，为null时不检查
+     */
+    public void setFrameQuality(FrameQuality quality) {
+        mFrameQuality = quality;
+    }
+
+    /**
+     * 设置解码前的画面变化检测。相机移动中的帧推迟解码，与解码失败的帧相比没有变化的帧直接跳过，
+     * 分别计入 DecodeMetrics 的 COUNTER_DEFERRED_MOVING 和 COUNTER_SKIPPED_UNCHANGED 计数，不计为解码失败。
+     * 变化检测先于质量预检执行。只对可以直接读取亮度的预览格式生效。
+     * @param detector 变化检测，为null时不检测
+     */
+    public void setMotionDetector(MotionDetector detector) {
+        mMotionDetector = detector;
+    }
+
+    /**
+     * 设置对焦策略。通过变化检测的帧计算清晰度交给策略，解码结果也反馈给策略；未解码的帧不反馈。
+     * 只对可以直接读取亮度的预览格式生效。
+     * @param policy 对焦策略，为null时不反馈
+     */
+    public void setFocusPolicy(FocusPolicy policy) {
+        mFocusPolicy = policy;
+    }
+
+    /**
+     * 设置是否解码每一帧中的所有二维码。启用后结果通过 onPostDecoded(List) 一次回调整帧的全部二维码。
+     * @param multiple 是否多码解码，默认false
+     */
+    public void setMultipleDecode(boolean multiple) {
+        mMultiple = multiple;
+    }
+
+    public int getWorkerCount() {
+        synchronized (mLock) {
+            return mWorkerCount;
+        }
+    }
+
+    /**
+     * 启动解码线程
+     */
+    public void start() {
+        synchronized (mLock) {
+            if (mWorkers == null) {
+                final MotionDetector motion = mMotionDetector;
+                if (motion != null) {
+                    // 重新启动后画面与停止前无关
+                    motion.reset();
+                }
+                startWorkers();
+            }
+        }
+    }
+
+    /**
+     * 停止解码线程。待解码帧被释放，正在解码的帧完成后线程退出，其结果不再回调。
+     * 使用共享解码器时，之后 start() 的工作线程等待这些线程退出后才开始解码。
+     */
+    public void stop() {
+        synchronized (mLock) {
+            if (mWorkers != null) {
+                stopWorkers();
+            }
+            if (mPending != null) {
+                mPending.frame.release();
+                mPending = null;
+                mMetrics.increment(DecodeMetrics.COUNTER_DROPPED);
+            }
+        }
+    }
+
+    /**
+     * 提交预览帧。工作线程都忙碌时，新帧替换尚未开始解码的旧帧。
+     * @param preview 预览帧，由调度器负责释放
+     */
+    public void submit(Frame preview) {
+        mMetrics.increment(DecodeMetrics.COUNTER_RECEIVED);
+        synchronized (mLock) {
+            if (mWorkers == null) {
+                preview.release();
+                mMetrics.increment(DecodeMetrics.COUNTER_DROPPED);
+                return;
+            }
+            if (mPending != null) {
+                mPending.frame.release();
+                mMetrics.increment(DecodeMetrics.COUNTER_DROPPED);
+            }
+            mPending = new Job(mNextSequence++, preview);
+            mLock.notify();
+        }
+    }
+
+    /**
+     * 接收帧源提供的帧，与 submit() 相同
+     */
+    @Override
+    public void onFrame(Frame frame) {
+        submit(frame);
+    }
+
+    public long getReceivedCount() {
+        return mMetrics.getCount(DecodeMetrics.COUNTER_RECEIVED);
+    }
+
+    public long getDroppedCount() {
+        return mMetrics.getCount(DecodeMetrics.COUNTER_DROPPED);
+    }
+
+    /**
+     * @return 因更新的帧已解码成功而被取消的帧数
+     */
+    public long getCanceledCount() {
+        return mMetrics.getCount(DecodeMetrics.COUNTER_CANCELED);
+    }
+
+    public long getDecodedCount() {
+        return mMetrics.getCount(DecodeMetrics.COUNTER_DECODED);
+    }
+
+    public long getFailedCount() {
+        return mMetrics.getCount(DecodeMetrics.COUNTER_FAILED);
+    }
+
+    private void startWorkers() {
+        final Worker[] workers = new Worker[mWorkerCount];
+        for (int i = 0; i < workers.length; i++) {
+            final Decoder decoder = mSharedDecoder != null ? mSharedDecoder : mDecoderBuilder.build();
+            // 共享的解码器不是线程安全的，不能与停止前仍在解码的线程同时使用
+            final Worker[] previous = mSharedDecoder != null ? mRetired : null;
+            workers[i] = new Worker(workers, previous, decoder, "DecodeScheduler-" + i);
+        }
+        mWorkers = workers;
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    private void stopWorkers() {
+        mRetired = mWorkers;
+        mWorkers = null;
+        mLock.notifyAll();
+    }
+
+    private void onDecoded(Worker worker, Job job, final List<DecodeResult> results) {
+        final Worker[] session = worker.session;
+        synchronized (mLock) {
+            if (mWorkers != session) {
+                return;
+            }
+            if (job.sequence < mDeliveredSequence) {
+                // 更新的帧已经回调了结果
+                mMetrics.increment(DecodeMetrics.COUNTER_CANCELED);
+                return;
+            }
+            mMetrics.increment(DecodeMetrics.COUNTER_DECODED);
+            mDeliveredSequence = job.sequence;
+            // 取消所有更早的帧：中断只在解码器的两次尝试之间生效，正在执行的一次尝试不会被打断
+            for (Worker other : session) {
+                if (other.runningSequence >= 0 && other.runningSequence < job.sequence) {
+                    other.interrupt();
+                }
+            }
+        }
+        final long posted = System.nanoTime();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mWorkers == session) {
+                    onPostDecoded(results);
+                    mMetrics.record(DecodeMetrics.STAGE_DISPATCH, System.nanoTime() - posted);
+                }
+            }
+        });
+    }
+
+    private boolean isCanceled(Job job) {
+        return Thread.currentThread().isInterrupted() || job.sequence < mDeliveredSequence;
+    }
+
+    /**
+     * @return 解码结果，失败时返回null
+     */
+    private List<DecodeResult> decode(Worker worker, Job job) {
+        final Decoder decoder = worker.decoder;
+        final Frame frame = job.frame;
+        try {
+            LuminanceSource source = frame.luminance();
+            if (source == null) {
+                if (!(frame instanceof CameraPreview)) {
+                    Log.w(TAG, "Unsupported frame format: " + frame.getFormat());
+                    return null;
+                }
+                // 预览格式不支持直接读取亮度，回退到图片转换方式
+                final long start = System.nanoTime();
+                final Bitmap capture = ((CameraPreview) frame).capture();
+                mMetrics.record(DecodeMetrics.STAGE_CONVERT, System.nanoTime() - start);
+                postProgress(capture);
+                return isCanceled(job) ? null : decode(decoder, capture);
+            }
+            if (source instanceof PlaneLuminanceSource) {
+                // Y平面只复制一次到工作线程的缓冲区，随即归还帧，相机的图像缓冲区不会被解码过程长时间占用
+                final long start = System.nanoTime();
+                source = ((PlaneLuminanceSource) source).compact(worker.obtainLuminances(source.getWidth() * source.getHeight()));
+                frame.release();
+                mMetrics.record(DecodeMetrics.STAGE_CONVERT, System.nanoTime() - start);
+            }
+            if (isPreviewRequired() && !isCanceled(job)) {
+                postProgress(CameraPreview.render(source));
+            }
+            if (!prefilter(worker, job, source)) {
+                job.rejected = true;
+                return null;
+            }
+            return isCanceled(job) ? null : decode(decoder, source);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Decode failed", e);
+            return null;
+        } finally {
+            frame.release();
+        }
+    }
+
+    private List<DecodeResult> decode(Decoder decoder, LuminanceSource source) {
+        return mMultiple ? nonEmpty(decoder.decodeMultiple(source)) : singleton(decoder.decodeResult(source));
+    }
+
+    private List<DecodeResult> decode(Decoder decoder, Bitmap capture) {
+        return mMultiple ? nonEmpty(decoder.decodeMultiple(capture)) : singleton(decoder.decodeResult(capture));
+    }
+
+    private static List<DecodeResult> nonEmpty(List<DecodeResult> results) {
+        return results.isEmpty() ? null : results;
+    }
+
+    private static List<DecodeResult> singleton(DecodeResult result) {
+        return result == null || TextUtils.isEmpty(result.getText()) ? null : Collections.singletonList(result);
+    }
+
+    private void postProgress(final Bitmap capture) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onDecodeProgress(capture);
+            }
+        });
+    }
+
+    /**
+     * 解码前的变化检测和质量预检
+     * @return 是否需要解码
+     */
+    private boolean prefilter(Worker worker, Job job, LuminanceSource source) {
+        final MotionDetector motion = mMotionDetector;
+        if (motion != null) {
+            final long start = System.nanoTime();
+            final int verdict = motion.check(source);
+            mMetrics.record(DecodeMetrics.STAGE_MOTION, System.nanoTime() - start);
+            if (verdict == MotionDetector.RESULT_MOVING) {
+                mMetrics.increment(DecodeMetrics.COUNTER_DEFERRED_MOVING);
+                return false;
+            }
+            if (verdict == MotionDetector.RESULT_UNCHANGED) {
+                mMetrics.increment(DecodeMetrics.COUNTER_SKIPPED_UNCHANGED);
+                return false;
+            }
+            job.motion = motion;
+        }
+        final FocusPolicy focus = mFocusPolicy;
+        final FrameQuality quality = mFrameQuality;
+        int verdict = FrameQuality.RESULT_OK;
+        if (quality != null) {
+            // 质量预检同时计算对焦策略需要的清晰度，只扫描一次
+            final long start = System.nanoTime();
+            verdict = quality.check(source, focus != null ? worker.sharpness : null);
+            mMetrics.record(DecodeMetrics.STAGE_QUALITY, System.nanoTime() - start);
+        }
+        if (focus != null) {
+            // 移动中的帧因晃动而模糊，与对焦无关，不计入清晰度
+            final int sharpness = quality != null ? worker.sharpness[0] : FrameQuality.sharpness(source);
+            focus.onFrame(sharpness, System.nanoTime());
+            job.focus = focus;
+        }
+        if (verdict != FrameQuality.RESULT_OK) {
+            mMetrics.increment(rejectedCounter(verdict));
+            if (motion != null) {
+                // 画面不变时预检结果也不变，按解码失败处理
+                motion.onDecodeFailed();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static int rejectedCounter(int verdict) {
+        switch (verdict) {
+            case FrameQuality.RESULT_DARK:
+                return DecodeMetrics.COUNTER_REJECTED_DARK;
+            case FrameQuality.RESULT_BRIGHT:
+                return DecodeMetrics.COUNTER_REJECTED_BRIGHT;
+            case FrameQuality.RESULT_FLAT:
+                return DecodeMetrics.COUNTER_REJECTED_FLAT;
+            default:
+                return DecodeMetrics.COUNTER_REJECTED_BLURRY;
+        }
+    }
+
+    private static void checkWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+    }
+
+    /**
+     * 解码成功，在主线程中回调。默认对每个结果调用 onPostDecoded(DecodeResult)。
+     * @param results 解码结果，单码模式时只有一个，多码模式时为同一帧中的全部二维码
+     */
+    protected void onPostDecoded(List<DecodeResult> results) {
+        for (DecodeResult result : results) {
+            onPostDecoded(result);
+        }
+    }
+
+    /**
+     * 解码成功，在主线程中回调。默认调用 onPostDecoded(String)。
+     * @param result 解码结果，包含定位点、码制和耗时
+     */
+    protected void onPostDecoded(DecodeResult result) {
+        onPostDecoded(result.getText());
+    }
+
+    /**
+     * 解码成功，在主线程中回调
+     * @param result 解码结果
+     */
+    protected void onPostDecoded(String result) {
+        // Override if need
+    }
+
+    /**
+     * 是否需要生成解码图片并回调 onDecodeProgress()
+     * @return 默认返回false
+     */
+    protected boolean isPreviewRequired() {
+        return false;
+    }
+
+    /**
+     * 解码的图片，在主线程中回调
+     * @param capture 图片
+     */
+    protected void onDecodeProgress(Bitmap capture) {
+        // Override if need
+    }
+
+    private static final class Job {
+
+        final long sequence;
+        final Frame frame;
+        // 提交时间，用于统计等待解码线程的时间
+        final long submitted = System.nanoTime();
+        // 未通过变化检测或质量预检，没有解码；只在解码线程中读写
+        boolean rejected;
+        // 判定为需要解码的变化检测，解码结果反馈给它
+        MotionDetector motion;
+        // 对焦策略，解码结果反馈给它
+        FocusPolicy focus;
+
+        Job(long sequence, Frame frame) {
+            this.sequence = sequence;
+            this.frame = frame;
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        final Worker[] session;
+        // 需要先等待退出的上一批工作线程，可以为null
+        private final Worker[] previous;
+        final Decoder decoder;
+        // 正在解码的帧序号，空闲时为-1；只在 mLock 内修改
+        volatile long runningSequence = -1;
+        // Y平面帧的亮度缓冲区，只在本线程中使用
+        private byte[] luminances = new byte[0];
+        // 质量预检顺带计算的清晰度，只在本线程中使用
+        final int[] sharpness = new int[1];
+
+        Worker(Worker[] session, Worker[] previous, Decoder decoder, String name) {
+            super(name);
+            this.session = session;
+            this.previous = previous;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void run() {
+            awaitPrevious();
+            while (true) {
+                final Job job;
+                synchronized (mLock) {
+                    while (mWorkers == session && mPending == null) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            // 继续检查状态
+                        }
+                    }
+                    if (mWorkers != session) {
+                        return;
+                    }
+                    job = mPending;
+                    mPending = null;
+                    runningSequence = job.sequence;
+                }
+                mMetrics.record(DecodeMetrics.STAGE_FRAME_WAIT, System.nanoTime() - job.submitted);
+                final List<DecodeResult> results = decode(this, job);
+                synchronized (mLock) {
+                    runningSequence = -1;
+                    // 解码过程中被更新帧的结果取消，同时清除中断状态
+                    final boolean interrupted = Thread.interrupted();
+                    if (interrupted || job.sequence < mDeliveredSequence) {
+                        mMetrics.increment(DecodeMetrics.COUNTER_CANCELED);
+                        continue;
+                    }
+                }
+                if (job.rejected) {
+                    continue;
+                }
+                final boolean failed = results == null;
+                if (job.motion != null) {
+                    if (failed) {
+                        job.motion.onDecodeFailed();
+                    } else {
+                        job.motion.onDecoded();
+                    }
+                }
+                if (job.focus != null) {
+                    job.focus.onDecodeResult(!failed, System.nanoTime());
+                }
+                if (failed) {
+                    mMetrics.increment(DecodeMetrics.COUNTER_FAILED);
+                } else {
+                    onDecoded(this, job, results);
+                }
+            }
+        }
+
+        private void awaitPrevious() {
+            if (previous == null) {
+                return;
+            }
+            for (Worker worker : previous) {
+                while (worker.isAlive()) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException e) {
+                        // 尚未开始解码，中断与本线程无关
+                    }
+                }
+            }
+        }
+
+        byte[] obtainLuminances(int size) {
+            if (luminances.length < size) {
+                luminances = new byte[size];
+            }
+            return luminances;
+        }
+    }
+}
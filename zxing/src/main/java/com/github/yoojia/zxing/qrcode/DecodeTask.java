@@ -1,15 +1,10 @@
 package com.github.yoojia.zxing.qrcode;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
-import android.hardware.Camera;
 import android.os.AsyncTask;
 import android.text.TextUtils;
 
-import java.io.ByteArrayOutputStream;
+import com.google.zxing.LuminanceSource;
 
 /**
  * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
@@ -19,6 +14,7 @@ import java.io.ByteArrayOutputStream;
 public abstract class DecodeTask extends AsyncTask<CameraPreview, Bitmap, String> {
 
     private final Decoder mQRCodeDecode;
+    private CameraPreview mPreview;
 
     public DecodeTask(Decoder qrCodeDecode) {
         mQRCodeDecode = qrCodeDecode;
@@ -29,9 +25,51 @@ public abstract class DecodeTask extends AsyncTask<CameraPreview, Bitmap, String
         if (params.length == 0){
             throw new IllegalArgumentException("Parameter required when call 'execute(CameraPreview)'; ");
         }
-        final Bitmap progress = params[0].capture();
-        this.publishProgress(progress);
-        return mQRCodeDecode.decode(progress);
+        final CameraPreview preview = params[0];
+        try {
+            final LuminanceSource source = preview.luminance();
+            if (source == null) {
+                // 预览格式不支持直接读取亮度，回退到图片转换方式
+                final Bitmap progress = preview.capture();
+                this.publishProgress(progress);
+                return mQRCodeDecode.decode(progress);
+            }
+            if (isPreviewRequired()) {
+                this.publishProgress(CameraPreview.render(source));
+            }
+            return mQRCodeDecode.decode(source);
+        } finally {
+            preview.release();
+        }
+    }
+
+    /**
+     * 执行解码任务。任务在开始前被取消时，帧数据同样会被释放。
+     * @param preview 相机预览帧
+     * @return 任务本身，与 AsyncTask.execute() 相同
+     */
+    public final AsyncTask<CameraPreview, Bitmap, String> execute(CameraPreview preview) {
+        mPreview = preview;
+        return super.execute(preview);
+    }
+
+    /**
+     * 任务被取消，释放帧数据后回调 onCancelled()。子类覆盖时应调用 super.onCancelled(s)。
+     */
+    @Override
+    protected void onCancelled(String s) {
+        if (mPreview != null) {
+            mPreview.release();
+        }
+        super.onCancelled(s);
+    }
+
+    /**
+     * 是否需要生成解码图片并回调 onDecodeProgress()。生成图片有额外开销，不需要显示时应返回false。
+     * @return 默认返回true
+     */
+    protected boolean isPreviewRequired(){
+        return true;
     }
 
     @Override
@@ -1,82 +1,132 @@
 package com.github.yoojia.zxing.qrcode;
 
 import android.graphics.Bitmap;
-import android.text.TextUtils;
-import android.util.Log;
 
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.RGBLuminanceSource;
-import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.EnumMap;
-import java.util.Map;
+import com.google.zxing.LuminanceSource;
+
+import java.util.List;
 
 /**
  * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
  * @since 1.0
- * 二维码图片解码成文本信息
+ * 二维码图片解码成文本信息。解码器复用内部的工作缓冲区，同一个实例不能在多个线程中同时使用。
  */
-public class Decoder {
+public class Decoder extends LuminanceDecoder {
 
     public static final String TAG = Decoder.class.getSimpleName();
 
-    private final MultiFormatReader mMultiFormatReader;
+    // 每次 getPixels() 读取的行数，兼顾调用次数和临时数组大小
+    private static final int PIXEL_BAND_ROWS = 16;
+
+    private int[] mBandPixels = new int[0];
 
     private Decoder(Builder builder) {
-        mMultiFormatReader = new MultiFormatReader();
-        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
-        Collection<BarcodeFormat> formats = new ArrayList<>();
-        formats.add(BarcodeFormat.QR_CODE);
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
-        hints.put(DecodeHintType.CHARACTER_SET, builder.mCharset);
-        mMultiFormatReader.setHints(hints);
+        super(builder);
     }
 
     public String decode(final Bitmap image){
-        final long start = System.currentTimeMillis();
+        final DecodeResult result = decodeResult(image);
+        return result == null ? null : result.getText();
+    }
+
+    /**
+     * 解码图片，返回包含定位点、码制和耗时的结果
+     * @param image 图片
+     * @return 解码结果，如果解码失败，返回null。
+     */
+    public DecodeResult decodeResult(final Bitmap image){
+        final long start = System.nanoTime();
+        final LuminanceSource source = luminance(image);
+        record(DecodeMetrics.STAGE_LUMINANCE, start);
+        return decodeResult(source);
+    }
+
+    /**
+     * 解码图片中的所有二维码
+     * @param image 图片
+     * @return 解码结果，没有找到二维码时返回空列表
+     * @see LuminanceDecoder#decodeMultiple(LuminanceSource)
+     */
+    public List<DecodeResult> decodeMultiple(final Bitmap image){
+        final long start = System.nanoTime();
+        final LuminanceSource source = luminance(image);
+        record(DecodeMetrics.STAGE_LUMINANCE, start);
+        return decodeMultiple(source);
+    }
+
+    /**
+     * 提取图片的灰度到工作缓冲区。按行带读取像素，不需要分配整张图片大小的 ARGB 数组；
+     * 相同尺寸的图片重复解码时不再分配新的缓冲区。
+     */
+    private LuminanceSource luminance(Bitmap image) {
         final int width = image.getWidth(), height = image.getHeight();
-        final int[] pixels = new int[width * height];
-        image.getPixels(pixels, 0, width, 0, 0, width, height);
-        final RGBLuminanceSource source = new RGBLuminanceSource(width, height, pixels);
-        final BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-        try {
-            Result rawResult = mMultiFormatReader.decodeWithState(bitmap);
-            final long end = System.currentTimeMillis();
-            Log.d(TAG, "QRCode decode in " + (end - start) + "ms");
-            Log.d(TAG, rawResult.toString());
-            return rawResult.getText();
-        } catch (NotFoundException re) {
-            Log.w(TAG, re);
-            return null;
-        }finally {
-            mMultiFormatReader.reset();
+        final byte[] luminances = obtainLuminances(width * height);
+        final int bandRows = Math.min(PIXEL_BAND_ROWS, height);
+        if (mBandPixels.length < width * bandRows) {
+            mBandPixels = new int[width * bandRows];
         }
+        final int[] pixels = mBandPixels;
+        for (int top = 0; top < height; top += bandRows) {
+            final int rows = Math.min(bandRows, height - top);
+            image.getPixels(pixels, 0, width, 0, top, width, rows);
+            toLuminances(pixels, 0, luminances, top * width, rows * width);
+        }
+        return new YUVLuminanceSource(luminances, width, height, 0, 0, width, height, 0);
     }
 
-    public static class Builder{
-
-        private String mCharset = "UTF-8";
+    public static class Builder extends LuminanceDecoder.Builder {
 
-        /**
-         * 设置文本编码格式
-         * @param charset 字符编码格式
-         * @return Builder，用于链式调用
-         */
+        @Override
         public Builder setCharset(String charset) {
-            if (TextUtils.isEmpty(charset)){
-                throw new IllegalArgumentException("Illegal charset: " + charset);
-            }
-            mCharset = charset;
+            super.setCharset(charset);
+            return this;
+        }
+
+        @Override
+        public Builder setEscalation(int lowest, int highest) {
+            super.setEscalation(lowest, highest);
+            return this;
+        }
+
+        @Override
+        public Builder setAdaptiveEscalation(boolean adaptive) {
+            super.setAdaptiveEscalation(adaptive);
+            return this;
+        }
+
+        @Override
+        public Builder setAdaptiveEscalation(int probeAfter, int resetAfter) {
+            super.setAdaptiveEscalation(probeAfter, resetAfter);
+            return this;
+        }
+
+        @Override
+        public Builder setPyramidLevels(int levels) {
+            super.setPyramidLevels(levels);
+            return this;
+        }
+
+        @Override
+        public Builder setTracking(boolean tracking) {
+            super.setTracking(tracking);
+            return this;
+        }
+
+        @Override
+        public Builder setMetrics(DecodeMetrics metrics) {
+            super.setMetrics(metrics);
+            return this;
+        }
+
+        @Override
+        public Builder setFormats(BarcodeFormat... formats) {
+            super.setFormats(formats);
             return this;
         }
 
+        @Override
         public Decoder build(){
             return new Decoder(this);
         }
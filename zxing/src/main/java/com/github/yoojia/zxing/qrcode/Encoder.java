@@ -1,32 +1,46 @@
 package com.github.yoojia.zxing.qrcode;
 
 import android.graphics.Bitmap;
-import android.text.TextUtils;
 import android.util.Log;
+import android.util.LruCache;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.common.BitMatrix;
 
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
 
 /**
  * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
  * @since 1.0
  * 将文本信息生成QRCode图片
  */
-public final class Encoder {
+public final class Encoder extends MatrixEncoder {
 
     public static final String TAG = Decoder.class.getSimpleName();
 
-    private final Builder mConfigBuilder;
-    private final MultiFormatWriter mMultiFormatWriter;
+    private static final Output<Bitmap> BITMAP_OUTPUT = new Output<Bitmap>() {
+        @Override
+        public Bitmap create(BitMatrix matrix, RasterRenderer renderer) {
+            return toBitmap(matrix, renderer);
+        }
+    };
+
+    private final LruCache<CacheKey, Bitmap> mCache;
+    private final RasterRenderer mRenderer;
 
-    private Encoder(Builder configBuilder) {
-        mConfigBuilder = configBuilder;
-        mMultiFormatWriter = new MultiFormatWriter();
+    private Encoder(Builder builder) {
+        super(builder);
+        mRenderer = new RasterRenderer(getCodeColor(), getBackgroundColor());
+        if (builder.mCacheSize > 0) {
+            mCache = new LruCache<CacheKey, Bitmap>(builder.mCacheSize) {
+                @Override
+                protected int sizeOf(CacheKey key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+        } else {
+            mCache = null;
+        }
     }
 
     /**
@@ -35,7 +49,7 @@ public final class Encoder {
      * @return Bitmap对象，如果生成失败，返回null。
      */
     public Bitmap encode(final String content){
-        return encode(content, mConfigBuilder.mOutputBitmapWidth, mConfigBuilder.mOutputBitmapHeight);
+        return encode(content, getOutputWidth(), getOutputHeight());
     }
 
     /**
@@ -43,117 +57,215 @@ public final class Encoder {
      * @param content 文本内容
      * @param width 输出图片宽度
      * @param height 输出图片高度
-     * @return Bitmap对象，如果生成失败，返回null。
+     * @return Bitmap对象，如果生成失败，返回null。启用缓存时，相同参数返回同一个Bitmap对象，不能修改或回收。
      */
     public Bitmap encode(final String content, int width, int height){
-        if (TextUtils.isEmpty(content)){
-            throw new IllegalArgumentException("QRCode encode content CANNOT be empty");
+        checkContent(content);
+        if (mCache == null) {
+            return encodeBitmap(content, width, height);
+        }
+        final CacheKey key = new CacheKey(content, width, height);
+        final Bitmap cached = mCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Bitmap bitmap = encodeBitmap(content, width, height);
+        if (bitmap != null) {
+            mCache.put(key, bitmap);
         }
+        return bitmap;
+    }
+
+    /**
+     * @return 缓存命中次数，未启用缓存时返回0
+     */
+    public int getCacheHitCount() {
+        return mCache == null ? 0 : mCache.hitCount();
+    }
+
+    /**
+     * @return 缓存未命中次数，未启用缓存时返回0
+     */
+    public int getCacheMissCount() {
+        return mCache == null ? 0 : mCache.missCount();
+    }
+
+    /**
+     * @return 因超出缓存容量而被淘汰的图片数量，未启用缓存时返回0
+     */
+    public int getCacheEvictionCount() {
+        return mCache == null ? 0 : mCache.evictionCount();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clearCache() {
+        if (mCache != null) {
+            mCache.evictAll();
+        }
+    }
+
+    /**
+     * 批量生成二维码图片，输出图片尺寸为 Builder 中设置的宽度和高度，不使用缓存。
+     * @param contents 文本内容
+     * @param executor 执行生成任务的线程池，并发度由线程池决定
+     * @param listener 结果回调，在执行线程中调用，同一批次的回调不会并发执行
+     * @throws InterruptedException 等待过程中调用线程被中断，此后不再提交和回调
+     * @see MatrixEncoder#encodeAll(Iterator, Executor, Output, MatrixEncoder.OnBatchEncodeListener)
+     */
+    public void encodeAll(Iterator<String> contents, Executor executor, OnBatchEncodeListener listener)
+            throws InterruptedException {
+        encodeAll(contents, executor, BITMAP_OUTPUT, listener);
+    }
+
+    /**
+     * 批量生成二维码图片
+     * @see #encodeAll(Iterator, Executor, OnBatchEncodeListener)
+     */
+    public void encodeAll(Iterable<String> contents, Executor executor, OnBatchEncodeListener listener)
+            throws InterruptedException {
+        encodeAll(contents.iterator(), executor, BITMAP_OUTPUT, listener);
+    }
+
+    private Bitmap encodeBitmap(final String content, int width, int height){
         final long start = System.currentTimeMillis();
-        final Map<EncodeHintType,Object> hints = new EnumMap<>(EncodeHintType.class);
-        // 字符编码
-        hints.put(EncodeHintType.CHARACTER_SET, mConfigBuilder.mCharset);
-        if (mConfigBuilder.mHintMargin >= 0){
-            // 输出图片外边距
-            hints.put(EncodeHintType.MARGIN, mConfigBuilder.mHintMargin);
-        }
-        BitMatrix result;
-        try {
-            result = mMultiFormatWriter.encode(content, BarcodeFormat.QR_CODE, width, height, hints);
-        } catch (Exception e) {
-            Log.w(TAG, e);
+        final BitMatrix result = encodeMatrix(content, width, height);
+        if (result == null) {
             return null;
         }
-        int finalBitmapWidth = result.getWidth();
-        int finalBitmapHeight = result.getHeight();
-        final int[] pixels = new int[finalBitmapWidth * finalBitmapHeight];
-        for (int y = 0; y < finalBitmapHeight; y++) {
-            int offset = y * finalBitmapWidth;
-            for (int x = 0; x < finalBitmapWidth; x++) {
-                pixels[offset + x] = result.get(x, y) ? mConfigBuilder.mCodeColor : mConfigBuilder.mBackgroundColor;
-            }
+        final Bitmap bitmap;
+        synchronized (mRenderer) {
+            bitmap = toBitmap(result, mRenderer);
         }
-        Bitmap bitmap = Bitmap.createBitmap(finalBitmapWidth, finalBitmapHeight, Bitmap.Config.ARGB_8888);
-        bitmap.setPixels(pixels, 0, finalBitmapWidth, 0, 0, finalBitmapWidth, finalBitmapHeight);
         final long end = System.currentTimeMillis();
         Log.d(TAG, "QRCode encode in " + (end - start) + "ms");
         return bitmap;
     }
 
-    public static class Builder{
+    private static Bitmap toBitmap(BitMatrix matrix, RasterRenderer renderer) {
+        final Bitmap bitmap = Bitmap.createBitmap(matrix.getWidth(), matrix.getHeight(), Bitmap.Config.ARGB_8888);
+        renderer.render(matrix, new RasterRenderer.RowSink() {
+            @Override
+            public void onRows(int[] pixels, int top, int rows, int width) {
+                bitmap.setPixels(pixels, 0, width, 0, top, width, rows);
+            }
+        });
+        return bitmap;
+    }
 
-        private int mBackgroundColor = 0xFFFFFFFF;
-        private int mCodeColor = 0xFF000000;
-        private String mCharset = "UTF-8";
-        private int mOutputBitmapWidth;
-        private int mOutputBitmapHeight;
-        private int mHintMargin = -1;
+    /**
+     * 批量生成结果回调，result 为二维码图片
+     */
+    public interface OnBatchEncodeListener extends MatrixEncoder.OnBatchEncodeListener<Bitmap> {
+    }
 
-        /**
-         * 设置生成二维码图片的背景色
-         * @param backgroundColor 背景色，如 0xFFFFFFFF
-         * @return Builder，用于链式调用
-         */
+    /**
+     * 缓存键：颜色、边距和字符编码在 build() 时已确定，内容和尺寸相同的二维码图片即可复用
+     */
+    private static final class CacheKey {
+
+        final String content;
+        final int width;
+        final int height;
+
+        CacheKey(String content, int width, int height) {
+            this.content = content;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return width == other.width && height == other.height && content.equals(other.content);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = content.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+
+    public static class Builder extends MatrixEncoder.Builder {
+
+        private int mCacheSize = 0;
+
+        @Override
         public Builder setBackgroundColor(int backgroundColor) {
-            mBackgroundColor = backgroundColor;
+            super.setBackgroundColor(backgroundColor);
             return this;
         }
 
-        /**
-         * 设置二维码的编码块颜色
-         * @param codeColor 编码块颜色，如 0xFF000000
-         * @return Builder，用于链式调用
-         */
+        @Override
         public Builder setCodeColor(int codeColor) {
-            mCodeColor = codeColor;
+            super.setCodeColor(codeColor);
             return this;
         }
 
-        /**
-         * 设置文本编码格式
-         * @param charset 字符编码格式
-         * @return Builder，用于链式调用
-         */
+        @Override
         public Builder setCharset(String charset) {
-            if (TextUtils.isEmpty(charset)){
-                throw new IllegalArgumentException("Illegal charset: " + charset);
-            }
-            mCharset = charset;
+            super.setCharset(charset);
             return this;
         }
 
-        /**
-         * 设置输出图片的宽度
-         * @param outputBitmapWidth 宽度，单位：px
-         * @return Builder，用于链式调用
-         */
+        @Override
         public Builder setOutputBitmapWidth(int outputBitmapWidth) {
-            mOutputBitmapWidth = outputBitmapWidth;
+            super.setOutputBitmapWidth(outputBitmapWidth);
             return this;
         }
 
-        /**
-         * 设置输出图片的高度
-         * @param outputBitmapHeight 高度，单位：px
-         * @return Builder，用于链式调用
-         */
+        @Override
         public Builder setOutputBitmapHeight(int outputBitmapHeight) {
-            mOutputBitmapHeight = outputBitmapHeight;
+            super.setOutputBitmapHeight(outputBitmapHeight);
+            return this;
+        }
+
+        @Override
+        public Builder setOutputBitmapPadding(int hintMargin) {
+            super.setOutputBitmapPadding(hintMargin);
             return this;
         }
 
         /**
-         * 设置输出二维码与图片边缘的距离
-         * @param hintMargin 距离值，正整数。
+         * 设置生成图片的缓存容量。相同内容和尺寸的二维码直接返回缓存的图片，
+         * 缓存按图片占用的内存总量限制，超出时淘汰最久未使用的图片。
+         * @param maxBytes 缓存容量，单位：字节。默认为0，不缓存。
+         * @return Builder，用于链式调用
          */
-        public Builder setOutputBitmapPadding(int hintMargin) {
-            mHintMargin = hintMargin;
+        public Builder setCacheSize(int maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+            }
+            mCacheSize = maxBytes;
+            return this;
+        }
+
+        @Override
+        public Builder setBatchWindow(int window) {
+            super.setBatchWindow(window);
+            return this;
+        }
+
+        @Override
+        public Builder setBatchOrdered(boolean ordered) {
+            super.setBatchOrdered(ordered);
             return this;
         }
 
         /**
          * @return QRCode生成器对象
          */
+        @Override
         public Encoder build(){
             return new Encoder(this);
         }
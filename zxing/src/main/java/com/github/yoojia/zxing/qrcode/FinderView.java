@@ -13,6 +13,7 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import com.github.yoojia.qrcode.R;
+import com.github.yoojia.zxing.camera.CameraManager;
 
 
 /**
@@ -51,7 +52,7 @@ public final class FinderView extends View {
         final int width = canvas.getWidth();
         final int height = canvas.getHeight();
         final int wh = width > height ? height : width;
-        final int boxLength = (int) (wh*0.6);
+        final int boxLength = (int) (wh * CameraManager.DEFAULT_FRAMING_RATIO);
         final int left = (width - boxLength)/2;
         final int top = (height - boxLength)/2;
         final int right = left + boxLength;
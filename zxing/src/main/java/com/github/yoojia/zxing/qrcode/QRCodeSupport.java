@@ -1,12 +1,22 @@
 package com.github.yoojia.zxing.qrcode;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.hardware.Camera;
 import android.util.Log;
 import android.view.SurfaceView;
 import android.widget.ImageView;
 
+import com.github.yoojia.zxing.camera.CameraFrameSource;
+import com.github.yoojia.zxing.camera.CameraManager;
 import com.github.yoojia.zxing.camera.Cameras;
+import com.github.yoojia.zxing.frame.Frame;
+import com.github.yoojia.zxing.frame.FrameSource;
+import com.github.yoojia.zxing.metrics.DecodeMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author :   Yoojia.Chen (yoojia.chen@gmail.com)
@@ -17,78 +27,348 @@ public class QRCodeSupport {
 
     public static final String TAG = QRCodeSupport.class.getSimpleName();
 
-    private final Decoder mQRCodeDecode = new Decoder.Builder().build();
+    // 流式扫描未设置预览缓冲区时使用的缓冲区数量
+    private static final int STREAMING_BUFFER_COUNT = 3;
+
+    private final DecodeMetrics mMetrics = new DecodeMetrics();
+    private final Decoder.Builder mDecoderBuilder = new Decoder.Builder().setMetrics(mMetrics);
+    private final DecodeScheduler mDecodeScheduler;
     private ImageView mCapturePreview = null;
     private OnResultListener mOnResultListener;
+    private OnStillSeenListener mOnStillSeenListener;
+    private OnDecodeResultListener mOnDecodeResultListener;
+    private OnBatchResultListener mOnBatchResultListener;
+    private DuplicateFilter mDuplicateFilter;
     private final Cameras mCameras;
+    private final CameraFrameSource mFrameSource;
     private Camera.PreviewCallback mPreviewFrameCallback;
+    private FrameSource.Consumer mBufferedFrameConsumer;
+    private int mPreviewBufferCount = 0;
+    private boolean mFramingRectDecode = false;
+    private final AtomicBoolean mFrameRequested = new AtomicBoolean(false);
+    private volatile boolean mStreaming = false;
+    private volatile long mStreamingInterval;
+    private long mLastStreamed;
 
     public QRCodeSupport(SurfaceView surfaceView) {
         this(surfaceView, null);
     }
 
     public QRCodeSupport(SurfaceView surfaceView, OnResultListener listener) {
+        mDecodeScheduler = new PreviewDecodeScheduler(mDecoderBuilder);
+        mDecodeScheduler.setMetrics(mMetrics);
         mPreviewFrameCallback = new Camera.PreviewCallback() {
-            private PreviewQRCodeDecodeTask mDecodeTask;
-
             @Override
             public void onPreviewFrame(byte[] data, Camera camera) {
-                if (mDecodeTask != null) {
-                    mDecodeTask.cancel(true);
+                final CameraManager manager = mCameras.getCameraManager();
+                final Rect region = mFramingRectDecode ? manager.getFramingRectInPreview() : null;
+                final CameraPreview preview = new CameraPreview(data, manager, false, region);
+                mDecodeScheduler.submit(preview);
+            }
+        };
+        mBufferedFrameConsumer = new FrameSource.Consumer() {
+            @Override
+            public void onFrame(Frame frame) {
+                // 相机持续写入缓冲区，只有请求过的帧或流式扫描按帧率选取的帧才交给解码器，其它帧直接归还
+                if (mFrameRequested.compareAndSet(true, false) || acceptStreamingFrame()) {
+                    mDecodeScheduler.submit(frame);
+                } else {
+                    frame.release();
                 }
-                Log.d(TAG, "onPreviewFrame");
-                mDecodeTask = new PreviewQRCodeDecodeTask(mQRCodeDecode);
-                CameraPreview preview = new CameraPreview(data, camera);
-                mDecodeTask.execute(preview);
             }
         };
         mCameras = new Cameras(surfaceView);
+        mFrameSource = new CameraFrameSource(mCameras);
 
         mOnResultListener = listener;
     }
 
     public void onResume() {
+        mDecodeScheduler.start();
         mCameras.start();
     }
 
     public void onPause() {
         mCameras.stop();
+        mDecodeScheduler.stop();
     }
 
+    /**
+     * 以定时对焦方式扫描，每次对焦成功后解码一帧
+     * @param period 对焦周期，单位：毫秒，不小于100
+     */
     public void startAuto(int period) {
+        if (mStreaming) {
+            mStreaming = false;
+            mCameras.setContinuousFocus(false);
+        }
+        startFocusTriggered(period);
+    }
+
+    /**
+     * 以连续对焦方式持续扫描。设备支持连续对焦时，相机自行保持对焦，预览帧按目标帧率持续交给解码器，
+     * 不再等待每一次对焦完成，首次解码只需要几帧；设备不支持连续对焦时回退为 startAuto(fallbackPeriod)。
+     * 解码器忙碌时新帧替换等待中的旧帧，目标帧率可以高于实际解码速度。
+     * 流式扫描从预览缓冲区中选取帧，未设置预览缓冲区时使用3个缓冲区。调用 startAuto() 恢复定时对焦方式。
+     * @param frameRate 每秒最多交给解码器的帧数，为0时不限制
+     * @param fallbackPeriod 不支持连续对焦时的对焦周期，单位：毫秒，不小于100
+     */
+    public void startStreaming(int frameRate, int fallbackPeriod) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + frameRate);
+        }
+        mStreamingInterval = frameRate > 0 ? 1000000000L / frameRate : 0;
+        mStreaming = true;
+        if (mPreviewBufferCount == 0) {
+            setPreviewBufferCount(STREAMING_BUFFER_COUNT);
+        }
+        mCameras.setContinuousFocus(true);
+        startFocusTriggered(fallbackPeriod);
+    }
+
+    /**
+     * 流式扫描时，按目标帧率判断当前帧是否交给解码器。只在相机实际处于连续对焦模式时生效，
+     * 否则由对焦成功的回调请求帧。在相机回调线程中调用。
+     */
+    private boolean acceptStreamingFrame() {
+        if (!mStreaming || !mCameras.isContinuousFocus()) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        if (now - mLastStreamed < mStreamingInterval) {
+            return false;
+        }
+        mLastStreamed = now;
+        return true;
+    }
+
+    /**
+     * 定时对焦，对焦成功后请求一帧。使用对焦策略时，策略决定不对焦的周期也会回调成功，按周期请求一帧。
+     * 连续对焦模式下 FocusManager 不会执行定时对焦。
+     */
+    private void startFocusTriggered(int period) {
         mCameras.startAutoFocus(period, new Camera.AutoFocusCallback() {
             @Override
             public void onAutoFocus(boolean success, Camera camera) {
                 if (success) {
-                    camera.setOneShotPreviewCallback(mPreviewFrameCallback);
+                    if (mPreviewBufferCount > 0) {
+                        mFrameRequested.set(true);
+                    } else {
+                        camera.setOneShotPreviewCallback(mPreviewFrameCallback);
+                    }
                 }
             }
         });
     }
 
+    /**
+     * 设置预览缓冲区数量。大于0时使用固定的缓冲区接收预览帧，解码完成后再归还给相机，避免每帧分配新的帧数据。
+     * 默认为0，即每次对焦成功后以单次回调方式获取一帧。
+     * @param bufferCount 缓冲区数量，建议为2~3
+     */
+    public void setPreviewBufferCount(int bufferCount) {
+        if (bufferCount < 0) {
+            throw new IllegalArgumentException("Buffer count must not be negative: " + bufferCount);
+        }
+        mPreviewBufferCount = bufferCount;
+        mFrameRequested.set(false);
+        if (bufferCount > 0) {
+            mFrameSource.setBufferCount(bufferCount);
+            mFrameSource.start(mBufferedFrameConsumer);
+        } else {
+            mFrameSource.stop();
+        }
+    }
+
     public void setOnResultListener(OnResultListener onResultListener) {
         mOnResultListener = onResultListener;
     }
 
+    /**
+     * 设置扫描结果去重。连续扫描时同一个二维码只回调一次 OnResultListener，
+     * 按 DuplicateFilter 的配置，重复结果可以较低的频率回调 OnStillSeenListener。默认不去重。
+     * @param filter 去重过滤器，为null时不去重
+     */
+    public void setDuplicateFilter(DuplicateFilter filter) {
+        mDuplicateFilter = filter;
+    }
+
+    /**
+     * 设置解码前的帧质量预检。过暗、过亮、没有对比度或模糊的帧直接跳过，不占用解码时间；
+     * 跳过的帧数按原因计入 getMetrics() 的 COUNTER_REJECTED_* 计数。默认不检查。
+     * @param quality 质量预检，如 new FrameQuality.Builder().build()；为null时不检查
+     */
+    public void setFrameQuality(FrameQuality quality) {
+        mDecodeScheduler.setFrameQuality(quality);
+    }
+
+    /**
+     * 设置解码前的画面变化检测。相机移动中的帧推迟到画面稳定后解码，对着同一画面反复解码失败时跳过没有变化的帧；
+     * 推迟和跳过的帧数计入 getMetrics() 的 COUNTER_DEFERRED_MOVING 和 COUNTER_SKIPPED_UNCHANGED 计数。默认不检测。
+     * @param detector 变化检测，如 new MotionDetector.Builder().build()；为null时不检测
+     */
+    public void setMotionDetector(MotionDetector detector) {
+        mDecodeScheduler.setMotionDetector(detector);
+    }
+
+    /**
+     * 设置自适应对焦策略，代替 startAuto() 的固定周期对焦：画面清晰时不对焦，画面模糊、清晰度下降或连续解码失败时立即对焦，
+     * 对焦无效时退避。策略只决定是否对焦，不对焦时仍按 startAuto() 的周期取帧解码。
+     * 策略的决策计入 getMetrics() 的 COUNTER_FOCUS_* 计数，对焦耗时计入 STAGE_FOCUS。
+     * 连续对焦模式下不执行定时对焦，策略不生效。默认不使用。
+     * @param policy 对焦策略，如 new FocusPolicy.Builder().build()；为null时恢复固定周期对焦
+     */
+    public void setFocusPolicy(FocusPolicy policy) {
+        if (policy != null) {
+            policy.setMetrics(mMetrics);
+        }
+        mDecodeScheduler.setFocusPolicy(policy);
+        mCameras.setFocusPolicy(policy);
+    }
+
+    /**
+     * 设置完整解码结果的回调，与 OnResultListener 同时回调，可以获取定位点、码制和解码耗时
+     * @param onDecodeResultListener 回调，为null时取消
+     */
+    public void setOnDecodeResultListener(OnDecodeResultListener onDecodeResultListener) {
+        mOnDecodeResultListener = onDecodeResultListener;
+    }
+
+    /**
+     * 设置多码扫描的回调。设置后每一帧解码画面中的所有二维码，经去重后有新结果时整批回调；
+     * 新结果同时逐个回调 OnResultListener 和 OnDecodeResultListener。为null时恢复单码扫描。
+     * 多码扫描不使用跟踪窗口，每帧的代价高于单码扫描。
+     * @param onBatchResultListener 回调
+     */
+    public void setOnBatchResultListener(OnBatchResultListener onBatchResultListener) {
+        mOnBatchResultListener = onBatchResultListener;
+        mDecodeScheduler.setMultipleDecode(onBatchResultListener != null);
+    }
+
+    public void setOnStillSeenListener(OnStillSeenListener onStillSeenListener) {
+        mOnStillSeenListener = onStillSeenListener;
+    }
+
     public void setCapturePreview(ImageView capturePreview) {
         mCapturePreview = capturePreview;
     }
 
-    private class PreviewQRCodeDecodeTask extends DecodeTask {
+    /**
+     * 获取解码器配置，如 setEscalation()。修改在下次 onResume() 或工作线程数量变化时生效。
+     * @return 解码器配置
+     */
+    public Decoder.Builder getDecoderBuilder() {
+        return mDecoderBuilder;
+    }
+
+    /**
+     * 是否只解码扫描框内的区域。扫描框由预览 View 坐标换算为预览帧坐标，只有框内的像素参与二值化和定位，
+     * 减少每帧的解码耗时。默认为false，即解码预览帧中间的正方形区域。
+     * @param enabled 是否只解码扫描框区域
+     */
+    public void setFramingRectDecode(boolean enabled) {
+        mFramingRectDecode = enabled;
+        mFrameSource.setFramingRectDecode(enabled);
+    }
+
+    /**
+     * 指定扫描框尺寸，扫描框在预览 View 中居中。未指定时与 FinderView 一致，为预览 View 短边的60%。
+     * @param width 宽度，像素
+     * @param height 高度，像素
+     */
+    public void setFramingRect(int width, int height) {
+        mCameras.setFramingRect(width, height);
+    }
+
+    /**
+     * 设置并行解码的工作线程数量，每个线程使用独立的解码器。默认为1。
+     * 使用预览缓冲区时，缓冲区数量应至少为 workerCount + 2，否则相机会因缓冲区不足而无法及时提供新帧。
+     * @param workerCount 工作线程数量，建议不超过CPU核心数
+     */
+    public void setDecodeWorkerCount(int workerCount) {
+        mDecodeScheduler.setWorkerCount(workerCount);
+    }
+
+    /**
+     * @return 解码线程忙碌时被新帧替换而丢弃的帧数
+     */
+    public long getDroppedFrameCount() {
+        return mDecodeScheduler.getDroppedCount();
+    }
+
+    /**
+     * @return 成功解码的帧数
+     */
+    public long getDecodedFrameCount() {
+        return mDecodeScheduler.getDecodedCount();
+    }
+
+    /**
+     * 扫描各阶段的耗时直方图和帧计数，可以随时调用 snapshot() 获取快照
+     * @return 扫描统计
+     */
+    public DecodeMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 设置扫描统计回调，每个阶段完成或计数变化时在对应的线程中回调，可以用于上报或自行聚合。
+     * @param listener 回调，为null时取消
+     */
+    public void setMetricsListener(DecodeMetrics.Listener listener) {
+        mMetrics.setListener(listener);
+    }
+
+    private class PreviewDecodeScheduler extends DecodeScheduler {
 
-        public PreviewQRCodeDecodeTask(Decoder qrCodeDecode) {
-            super(qrCodeDecode);
+        public PreviewDecodeScheduler(Decoder.Builder builder) {
+            super(builder, 1);
         }
 
         @Override
-        protected void onPostDecoded(String result) {
-            if (mOnResultListener == null) {
+        protected void onPostDecoded(List<DecodeResult> results) {
+            final DuplicateFilter filter = mDuplicateFilter;
+            final OnBatchResultListener batchListener = mOnBatchResultListener;
+            List<DecodeResult> fresh = null;
+            for (DecodeResult result : results) {
+                final String text = result.getText();
+                final int verdict = filter == null ? DuplicateFilter.RESULT_NEW : filter.filter(text);
+                if (verdict == DuplicateFilter.RESULT_STILL_SEEN) {
+                    if (mOnStillSeenListener != null) {
+                        mOnStillSeenListener.onStillSeen(text);
+                    }
+                } else if (verdict == DuplicateFilter.RESULT_NEW) {
+                    onNewResult(result);
+                    if (batchListener != null) {
+                        if (fresh == null) {
+                            fresh = new ArrayList<>(results.size());
+                        }
+                        fresh.add(result);
+                    }
+                }
+            }
+            if (fresh != null) {
+                batchListener.onBatchResult(fresh, results);
+            }
+        }
+
+        private void onNewResult(DecodeResult result) {
+            if (mOnResultListener == null && mOnDecodeResultListener == null && mOnBatchResultListener == null) {
                 Log.w(TAG, "WARNING ! QRCode result ignored !");
-            } else {
-                mOnResultListener.onScanResult(result);
+            }
+            if (mOnResultListener != null) {
+                mOnResultListener.onScanResult(result.getText());
+            }
+            if (mOnDecodeResultListener != null) {
+                mOnDecodeResultListener.onDecodeResult(result);
             }
         }
 
+        @Override
+        protected boolean isPreviewRequired() {
+            return mCapturePreview != null;
+        }
+
         @Override
         protected void onDecodeProgress(Bitmap capture) {
             Log.d(TAG, "onDecodeProgress");
@@ -101,4 +381,30 @@ public class QRCodeSupport {
     public interface OnResultListener {
         void onScanResult(String notNullResult);
     }
+
+    /**
+     * 完整的解码结果，定位点为裁剪、旋转后参与解码的图像中的坐标
+     */
+    public interface OnDecodeResultListener {
+        void onDecodeResult(DecodeResult notNullResult);
+    }
+
+    /**
+     * 多码扫描结果
+     */
+    public interface OnBatchResultListener {
+
+        /**
+         * @param fresh 去重后的新结果，至少有一个
+         * @param frame 同一帧中解码的全部二维码，包括重复的结果
+         */
+        void onBatchResult(List<DecodeResult> fresh, List<DecodeResult> frame);
+    }
+
+    /**
+     * 已回调过的二维码仍在画面中，按 DuplicateFilter 设置的间隔回调
+     */
+    public interface OnStillSeenListener {
+        void onStillSeen(String notNullResult);
+    }
 }